@@ -0,0 +1,102 @@
+package com.google;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * User commands run through {@link CommandParser} against a generated catalog, the way the
+ * console drives the player. Console output is discarded and every prompt is answered "no".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class CommandBenchmark {
+
+  //videos in the playlist listed by showPlaylist
+  private static final int PLAYLIST_SIZE = 100;
+
+  @Param({"1000", "100000", "1000000"})
+  int size;
+
+  private CommandParser parser;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    VideoLibrary library = new VideoLibrary(SyntheticCatalog.of(size), VideoLibrary.Loader.MAPPED);
+    parser = new CommandParser(SyntheticCatalog.session(library));
+    parser.executeCommand(List.of("CREATE_PLAYLIST", "listed"));
+    for (int i = 0; i < PLAYLIST_SIZE; i++) {
+      parser.executeCommand(List.of("ADD_TO_PLAYLIST", "listed", SyntheticCatalog.id(i)));
+    }
+    parser.executeCommand(List.of("CREATE_PLAYLIST", "scratch"));
+    //build the lazy library views outside the measurement
+    parser.executeCommand(List.of("SEARCH_VIDEOS", "warm"));
+    parser.executeCommand(List.of("SEARCH_VIDEOS_WITH_TAG", "#warm"));
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "1", "1"));
+  }
+
+  /** Id of a different video on every call, spread over the whole catalog. */
+  private String nextId() {
+    next = (next + 7919) % size;
+    return SyntheticCatalog.id(next);
+  }
+
+  @Benchmark
+  public void searchVideos() {
+    parser.executeCommand(List.of("SEARCH_VIDEOS", "tutorial"));
+  }
+
+  @Benchmark
+  public void searchVideosNoMatch() {
+    parser.executeCommand(List.of("SEARCH_VIDEOS", "zebra"));
+  }
+
+  @Benchmark
+  public void searchVideosWithTag() {
+    parser.executeCommand(List.of("SEARCH_VIDEOS_WITH_TAG", "#tag" + SyntheticCatalog.TAGS / 2));
+  }
+
+  @Benchmark
+  public void playlistAddRemove() {
+    String id = this.nextId();
+    parser.executeCommand(List.of("ADD_TO_PLAYLIST", "scratch", id));
+    parser.executeCommand(List.of("REMOVE_FROM_PLAYLIST", "scratch", id));
+  }
+
+  @Benchmark
+  public void showPlaylist() {
+    parser.executeCommand(List.of("SHOW_PLAYLIST", "listed"));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void showAllVideos() {
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS"));
+  }
+
+  @Benchmark
+  public void showAllVideosPage() {
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", Integer.toString(size / 40), "20"));
+  }
+
+  @Benchmark
+  public void rateVideo() {
+    parser.executeCommand(List.of("RATE_VIDEO", this.nextId(), "4"));
+  }
+}
@@ -0,0 +1,69 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the parser costs per line before any command runs: splitting the line and finding the
+ * verb, next to the regular expression split and upper casing it replaced, and a whole cheap
+ * command including writing its output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandFrontEndBenchmark {
+
+  private static final String[] LINES = {
+      "ADD_TO_PLAYLIST my_playlist v12", "show_playlist My_Playlist", "PLAY v3",
+      "search_videos_with_tag #tag7", "  rate_video v42 5", "NEXT", "SHOW_ALL_VIDEOS 3 20"};
+
+  private final CommandLine line = new CommandLine();
+  private CommandParser parser;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    parser = new CommandParser(SyntheticCatalog.session(
+        new VideoLibrary(SyntheticCatalog.of(1000), VideoLibrary.Loader.MAPPED)));
+  }
+
+  private String nextLine() {
+    next = next == LINES.length - 1 ? 0 : next + 1;
+    return LINES[next];
+  }
+
+  @Benchmark
+  public Verb splitAndResolve() {
+    CommandLine command = line.split(this.nextLine());
+    return Verb.lookup(command.getLine(), command.start(0), command.end(0));
+  }
+
+  /** The front end before: a regular expression split into a list and an upper cased verb. */
+  @Benchmark
+  public String regexSplitAndUpperCase() {
+    List<String> command = Arrays.asList(this.nextLine().split("\\s+"));
+    return command.get(0).toUpperCase(Locale.ROOT);
+  }
+
+  /** A whole command that only prints one line, nothing is playing. */
+  @Benchmark
+  public void showPlaying() {
+    parser.executeLine("SHOW_PLAYING");
+  }
+}
@@ -0,0 +1,57 @@
+package com.google;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time to load a generated catalog into a {@link VideoLibrary} with each loader. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LibraryLoadBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  int size;
+
+  //a name rather than the enum, the generated benchmark code lives in another package
+  @Param({"SCANNER", "MAPPED", "PARALLEL", "SNAPSHOT"})
+  String loaderName;
+
+  private VideoLibrary.Loader loader;
+  private Path catalog;
+
+  @Setup
+  public void generate() {
+    loader = VideoLibrary.Loader.valueOf(loaderName);
+    catalog = SyntheticCatalog.of(size);
+    if (loader == VideoLibrary.Loader.SNAPSHOT) {
+      //write the snapshot up front, the benchmark measures serving from it
+      new VideoLibrary(catalog, loader);
+    }
+  }
+
+  @Benchmark
+  public VideoLibrary load() {
+    return new VideoLibrary(catalog, loader);
+  }
+
+  /** Load plus the first title listing, which builds the title order. */
+  @Benchmark
+  public int loadAndSortTitles() {
+    VideoLibrary library = new VideoLibrary(catalog, loader);
+    return library.getVideosByTitle(0, 1).size();
+  }
+}
@@ -0,0 +1,94 @@
+package com.google;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Playlist commands naming a playlist in a different case than it was created with, for a
+ * growing number of playlists. Latency should stay flat as the count grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class PlaylistLookupBenchmark {
+
+  @Param({"100", "10000", "300000"})
+  int playlists;
+
+  private VideoPlayer player;
+  private String[] typedNames;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    player = SyntheticCatalog.session(new VideoLibrary(SyntheticCatalog.of(1000), VideoLibrary.Loader.MAPPED));
+    typedNames = new String[playlists];
+    for (int i = 0; i < playlists; i++) {
+      player.createPlaylist("Playlist_" + i);
+      typedNames[i] = "PLAYLIST_" + i;
+    }
+    for (int i = 0; i < Math.min(playlists, 100); i++) {
+      player.addVideoToPlaylist(typedNames[i], SyntheticCatalog.id(i));
+    }
+  }
+
+  private String nextName() {
+    next = (next + 7919) % playlists;
+    return typedNames[next];
+  }
+
+  @Benchmark
+  public boolean nameExists() {
+    return player.nameExists(this.nextName().toLowerCase(Locale.ROOT));
+  }
+
+  @Benchmark
+  public void addAndRemoveVideo() {
+    String name = this.nextName();
+    player.addVideoToPlaylist(name, "v999");
+    player.removeFromPlaylist(name, "v999");
+  }
+
+  @Benchmark
+  public void showPlaylist() {
+    player.showPlaylist(this.nextName());
+  }
+
+  @Benchmark
+  public void createAndDeletePlaylist() {
+    player.createPlaylist("Scratch");
+    player.deletePlaylist("SCRATCH");
+  }
+
+  /** Same commands through the parser, including its tokenized argument list. */
+  @Benchmark
+  public void showPlaylistCommand(CommandState state) {
+    state.parser.executeCommand(List.of("SHOW_PLAYLIST", this.nextName()));
+  }
+
+  @State(Scope.Benchmark)
+  public static class CommandState {
+    CommandParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp(PlaylistLookupBenchmark benchmark) {
+      parser = new CommandParser(benchmark.player);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.google;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ratings per second through {@link RatingIngestor} next to {@link Video#addScore} one rating
+ * at a time. Popularity is skewed so a few videos take most ratings. Run it with several
+ * producer threads through the JMH thread count, e.g. {@code -Djmh.options="-t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RatingIngestBenchmark {
+
+  private static final int BATCH_SIZE = 1024;
+  //ratings drawn up front per thread, so only ingestion is measured
+  private static final int DRAWN = 1 << 20;
+
+  @Param({"10000"})
+  int videos;
+
+  private VideoLibrary library;
+  private RatingIngestor ingestor;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    library = new VideoLibrary(SyntheticCatalog.of(videos), VideoLibrary.Loader.MAPPED);
+    ingestor = new RatingIngestor(library);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void batched(Producer producer) {
+    ingestor.ingest(producer.nextIds(), producer.nextScores(), BATCH_SIZE);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void oneByOne(Producer producer) {
+    String[] ids = producer.nextIds();
+    int[] scores = producer.nextScores();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      library.getVideo(ids[i]).addScore(scores[i]);
+    }
+  }
+
+  /** Ratings of one producer thread, handed out a batch at a time. */
+  @State(Scope.Thread)
+  public static class Producer {
+    private String[] ids;
+    private int[] scores;
+    private final String[] batchIds = new String[BATCH_SIZE];
+    private final int[] batchScores = new int[BATCH_SIZE];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(RatingIngestBenchmark benchmark) {
+      SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+      ids = new String[DRAWN];
+      scores = new int[DRAWN];
+      for (int i = 0; i < DRAWN; i++) {
+        ids[i] = SyntheticCatalog.id((int) (benchmark.videos * Math.pow(random.nextDouble(), 3)));
+        scores[i] = random.nextInt(Video.MAX_SCORE) + 1;
+      }
+    }
+
+    String[] nextIds() {
+      System.arraycopy(ids, next, batchIds, 0, BATCH_SIZE);
+      return batchIds;
+    }
+
+    int[] nextScores() {
+      System.arraycopy(scores, next, batchScores, 0, BATCH_SIZE);
+      next = (next + BATCH_SIZE) % DRAWN;
+      return batchScores;
+    }
+  }
+}
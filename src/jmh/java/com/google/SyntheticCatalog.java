@@ -0,0 +1,79 @@
+package com.google;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+/**
+ * Generated catalogs and sessions shared by the benchmarks. A catalog of a given size
+ * is always the same file, it is written once to the temp directory and reused by later runs.
+ */
+final class SyntheticCatalog {
+
+  static final String[] WORDS = {
+      "funny", "dogs", "amazing", "cats", "another", "video", "life", "at", "google", "about",
+      "nothing", "music", "piano", "relaxing", "tutorial", "beginners", "python", "career",
+      "change", "game", "theory", "animal", "moments", "intro", "lecture", "review", "live",
+      "highlights", "cooking", "travel", "vlog", "guide", "news", "podcast", "episode"};
+
+  /** Distinct tags in a catalog, tag {@code i} is {@code #tag<i>}. */
+  static final int TAGS = 500;
+
+  private SyntheticCatalog() {
+  }
+
+  /** Id of the video on line {@code i} of a generated catalog. */
+  static String id(int i) {
+    return "v" + i;
+  }
+
+  /** Path of the generated catalog with {@code size} videos, written on first use. */
+  static Path of(int size) {
+    Path file = Paths.get(System.getProperty("java.io.tmpdir"), "youtube-jmh", "videos-" + size + ".txt");
+    if (Files.exists(file)) {
+      return file;
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), "videos", ".tmp");
+      SplittableRandom random = new SplittableRandom(size);
+      try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        for (int i = 0; i < size; i++) {
+          int words = 2 + random.nextInt(5);
+          for (int w = 0; w < words; w++) {
+            writer.write(WORDS[random.nextInt(WORDS.length)]);
+            writer.write(' ');
+          }
+          writer.write(Integer.toString(i, 36));
+          writer.write(" | " + id(i) + " | ");
+          int tags = random.nextInt(4);
+          for (int t = 0; t < tags; t++) {
+            //skewed so a few tags are on many videos, like real tagging
+            writer.write((t > 0 ? " , " : "") + "#tag" + (int) (TAGS * Math.pow(random.nextDouble(), 2)));
+          }
+          writer.write(" | https://www.youtube.com/watch?v=" + i + "\n");
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return file;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Session over a library that writes into the void the way it would write to a terminal, and
+   * declines every question.
+   */
+  static VideoPlayer session(VideoLibrary library) {
+    return new PlayerEngine(library).openSession(PlayerEngine.DEFAULT_USER,
+        new BufferedSink(OutputStream.nullOutputStream(), StandardCharsets.UTF_8), PromptPolicy.DECLINE);
+  }
+}
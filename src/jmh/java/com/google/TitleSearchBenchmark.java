@@ -0,0 +1,66 @@
+package com.google;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SEARCH_VIDEOS through the trigram {@link TitleIndex} next to the linear scan it replaced,
+ * for common, rare, missing and very short terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TitleSearchBenchmark {
+
+  @Param({"10000", "1000000"})
+  int size;
+
+  @Param({"cat", "piano music", "tutorial for", "zebra", "go"})
+  String query;
+
+  private VideoLibrary library;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    library = new VideoLibrary(SyntheticCatalog.of(size), VideoLibrary.Loader.MAPPED);
+    //builds the index outside of the measurement
+    library.searchTitles("warm up");
+  }
+
+  @Benchmark
+  public List<Video> index() {
+    return library.searchTitles(query);
+  }
+
+  /** The search loop VideoPlayer used before the title index. */
+  @Benchmark
+  public List<Video> linearScan() {
+    String term = query.toLowerCase(Locale.ROOT);
+    List<Video> result = new ArrayList<>();
+    for (Video video : library.getVideos()) {
+      if (video.getTitle().toLowerCase(Locale.ROOT).contains(term)) {
+        result.add(video);
+      }
+    }
+    result.sort(Comparator.comparing(Video::getTitle));
+    return result;
+  }
+}
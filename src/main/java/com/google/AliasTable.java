@@ -0,0 +1,71 @@
+package com.google;
+
+import java.util.SplittableRandom;
+
+/**
+ * Picks ordinals with chances in proportion to their weights in constant time, by Vose's alias
+ * method. Building the table is linear in the number of ordinals; it does not follow later
+ * changes of the weights, the owner builds a new one then.
+ */
+class AliasTable {
+
+  private final int[] ordinals;
+  //chance of keeping the ordinal of a column, otherwise its alias is picked
+  private final double[] keep;
+  private final int[] alias;
+
+  /** Table over the first {@code size} ordinals, weights must be positive. */
+  AliasTable(int[] ordinals, double[] weights, int size) {
+    this.ordinals = new int[size];
+    this.keep = new double[size];
+    this.alias = new int[size];
+    double total = 0;
+    for (int i = 0; i < size; i++) {
+      this.ordinals[i] = ordinals[i];
+      total += weights[i];
+    }
+    //columns below and above the average weight, both kept as stacks in one array
+    int[] work = new int[size];
+    int small = 0;
+    int large = size;
+    for (int i = 0; i < size; i++) {
+      keep[i] = weights[i] * size / total;
+      if (keep[i] < 1) {
+        work[small++] = i;
+      } else {
+        work[--large] = i;
+      }
+    }
+    while (small > 0 && large < size) {
+      int less = work[--small];
+      int more = work[large++];
+      alias[less] = this.ordinals[more];
+      keep[more] -= 1 - keep[less];
+      if (keep[more] < 1) {
+        work[small++] = more;
+      } else {
+        work[--large] = more;
+      }
+    }
+    //whatever is left is a whole column up to rounding
+    while (small > 0) {
+      keep[work[--small]] = 1;
+    }
+    while (large < size) {
+      keep[work[large++]] = 1;
+    }
+  }
+
+  int size() {
+    return ordinals.length;
+  }
+
+  /** An ordinal chosen by weight, -1 when the table is empty. */
+  int pick(SplittableRandom random) {
+    if (ordinals.length == 0) {
+      return -1;
+    }
+    int column = random.nextInt(ordinals.length);
+    return random.nextDouble() < keep[column] ? ordinals[column] : alias[column];
+  }
+}
@@ -0,0 +1,74 @@
+package com.google;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens URLs through another launcher on a background thread, so a command never waits for a
+ * browser to start. URLs asked for in quick succession are coalesced: each launch waits
+ * {@link #COALESCE_MILLIS} and opens only the last URL asked for by then, so stepping through
+ * a playlist with NEXT opens one tab, not one per step.
+ *
+ * <p>The queue holds a single URL. Asking for another one replaces it, a launch is scheduled
+ * only when there was none waiting, so at most one launch is ever queued.
+ */
+final class AsyncBrowserLauncher implements BrowserLauncher, Closeable {
+
+  /** How long a launch waits for a later URL to replace its own. */
+  static final long COALESCE_MILLIS = 50;
+
+  private final BrowserLauncher target;
+  private final long coalesceMillis;
+  //the next URL to open, null when no launch is waiting
+  private final AtomicReference<String> pending = new AtomicReference<>();
+  private final ScheduledThreadPoolExecutor executor;
+
+  AsyncBrowserLauncher(BrowserLauncher target) {
+    this(target, COALESCE_MILLIS);
+  }
+
+  /** Launcher opening through {@code target}, which may block, e.g. by starting a process. */
+  AsyncBrowserLauncher(BrowserLauncher target, long coalesceMillis) {
+    this.target = target;
+    this.coalesceMillis = coalesceMillis;
+    this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "browser-launcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void open(String url) {
+    if (pending.getAndSet(url) == null && !executor.isShutdown()) {
+      executor.schedule(this::launch, coalesceMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void launch() {
+    String url = pending.getAndSet(null);
+    if (url == null) {
+      return;
+    }
+    try {
+      target.open(url);
+    } catch (RuntimeException e) {
+      //no one is waiting to hear about it, the next URL is tried all the same
+    }
+  }
+
+  /** Opens the URL still waiting, if any, and stops the thread. */
+  @Override
+  public void close() throws InterruptedIOException {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for the browser launcher");
+    }
+  }
+}
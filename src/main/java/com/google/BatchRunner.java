@@ -0,0 +1,200 @@
+package com.google;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs commands from a file or stream end to end with nobody at the keyboard, e.g. a command
+ * log replayed for capacity planning. Questions are answered by the {@link PromptPolicy} of the
+ * session and its output should go to a {@link BatchSink}. A reader thread decodes lines and
+ * hands them over in chunks while the calling thread runs them, so reading the input overlaps
+ * running the commands.
+ */
+class BatchRunner {
+
+  //lines handed from the reader to the runner at once, and chunks read ahead
+  private static final int CHUNK_LINES = 1024;
+  private static final int CHUNKS_AHEAD = 8;
+  //commands between writes of the output
+  private static final int OUTPUT_BATCH = 1024;
+  //the reader ran out of lines
+  private static final String[] END = new String[0];
+
+  private final CommandParser parser;
+  private long commands;
+  private long rejected;
+  private long elapsedNanos;
+
+  BatchRunner(CommandParser parser) {
+    this.parser = parser;
+    //changes are committed as often as the output is written
+    parser.commitEvery(OUTPUT_BATCH);
+  }
+
+  /** Runs every line until the input ends or a line says EXIT, blank lines are skipped. */
+  void run(Reader input) throws IOException {
+    BlockingQueue<String[]> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    AtomicReference<IOException> failure = new AtomicReference<>();
+    BufferedReader lines = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+    Thread reader = new Thread(() -> read(lines, chunks, failure), "batch-reader");
+    reader.setDaemon(true);
+    long begin = System.nanoTime();
+    reader.start();
+    try {
+      run:
+      while (true) {
+        String[] chunk = chunks.take();
+        if (chunk == END) {
+          break;
+        }
+        for (String line : chunk) {
+          if (line.isBlank()) {
+            continue;
+          }
+          if (line.strip().equalsIgnoreCase("exit")) {
+            break run;
+          }
+          commands++;
+          if (!parser.executeLine(line)) {
+            rejected++;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted after " + commands + " commands");
+    } finally {
+      //stops the reader if the script ended before its input did
+      reader.interrupt();
+    }
+    parser.commit();
+    elapsedNanos = System.nanoTime() - begin;
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  private static void read(BufferedReader in, BlockingQueue<String[]> chunks,
+      AtomicReference<IOException> failure) {
+    try {
+      try {
+        String[] chunk = new String[CHUNK_LINES];
+        int size = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+          chunk[size++] = line;
+          if (size == CHUNK_LINES) {
+            chunks.put(chunk);
+            chunk = new String[CHUNK_LINES];
+            size = 0;
+          }
+        }
+        if (size > 0) {
+          chunks.put(Arrays.copyOf(chunk, size));
+        }
+      } catch (IOException e) {
+        failure.set(e);
+      }
+      chunks.put(END);
+    } catch (InterruptedException e) {
+      //the runner stopped early
+    }
+  }
+
+  /** Commands run, blank lines and EXIT not included. */
+  long getCommands() {
+    return commands;
+  }
+
+  /** Commands that were not well formed, see {@link CommandParser#executeLine}. */
+  long getRejected() {
+    return rejected;
+  }
+
+  long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /** One line on how long the run took. */
+  String summary() {
+    double seconds = elapsedNanos / 1e9;
+    return String.format(Locale.ROOT, "%,d commands in %.3f s, %,.0f commands/s, %.2f us per command, %,d rejected",
+        commands, seconds, commands / seconds, commands == 0 ? 0 : elapsedNanos / 1e3 / commands, rejected);
+  }
+
+  /**
+   * Runs a script, arguments are {@code [--answer decline|accept] [--quiet] [--catalog <file>]
+   * <script>}, where a script of {@code -} is read from standard input. Questions are declined
+   * unless told otherwise, output goes to standard output, or nowhere with --quiet, and the
+   * summary to standard error.
+   */
+  public static void main(String[] args) throws IOException {
+    PromptPolicy prompts = PromptPolicy.DECLINE;
+    boolean quiet = false;
+    String catalog = null;
+    String script = null;
+    boolean valid = true;
+    for (int i = 0; i < args.length && valid; i++) {
+      switch (args[i]) {
+        case "--answer":
+          valid = i + 1 < args.length;
+          if (valid) {
+            try {
+              prompts = PromptPolicy.named(args[++i]);
+            } catch (IllegalArgumentException e) {
+              System.err.println(e.getMessage());
+              valid = false;
+            }
+          }
+          break;
+        case "--quiet":
+          quiet = true;
+          break;
+        case "--catalog":
+          valid = i + 1 < args.length;
+          if (valid) {
+            catalog = args[++i];
+          }
+          break;
+        default:
+          //one script, "-" is standard input and anything else starting with - an unknown option
+          valid = script == null && (!args[i].startsWith("-") || args[i].equals("-"));
+          script = args[i];
+      }
+    }
+    if (!valid || script == null) {
+      System.err.println("Usage: BatchRunner [--answer decline|accept] [--quiet] [--catalog <file>] <script|->");
+      return;
+    }
+    VideoLibrary library = catalog == null
+        ? new VideoLibrary()
+        : new VideoLibrary(Paths.get(catalog), VideoLibrary.Loader.fromProperty());
+    OutputStream output = quiet ? OutputStream.nullOutputStream() : System.out;
+    BatchSink sink = new BatchSink(output, Charset.defaultCharset(), OUTPUT_BATCH);
+    BatchRunner runner;
+    try (PlayerEngine engine = PlayerEngine.fromProperties(library);
+        Reader input = script.equals("-")
+            ? new InputStreamReader(System.in, Charset.defaultCharset())
+            : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+      runner = new BatchRunner(new CommandParser(
+          engine.openSession(PlayerEngine.DEFAULT_USER, sink, prompts)));
+      runner.run(input);
+    } finally {
+      sink.close();
+    }
+    System.err.println(runner.summary());
+  }
+}
@@ -0,0 +1,39 @@
+package com.google;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link BufferedSink} for output nobody watches as it happens, e.g. a script run: flushes
+ * only every {@code batch} commands and on {@link #close()}, so the stream is written and
+ * flushed once per batch instead of once per command.
+ */
+class BatchSink extends BufferedSink implements Closeable {
+
+  private final int batch;
+  private int pending;
+
+  BatchSink(OutputStream out, Charset charset, int batch) {
+    super(out, charset);
+    if (batch < 1) {
+      throw new IllegalArgumentException("Batch should be at least one command: " + batch);
+    }
+    this.batch = batch;
+  }
+
+  @Override
+  public void flush() {
+    if (++pending >= batch) {
+      pending = 0;
+      super.flush();
+    }
+  }
+
+  /** Flushes what the last, incomplete batch printed. */
+  @Override
+  public void close() {
+    pending = 0;
+    super.flush();
+  }
+}
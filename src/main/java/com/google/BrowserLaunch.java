@@ -1,42 +1,86 @@
 package com.google;
 
-import java.lang.reflect.Method;
-
-/** A class to enable browser launch for different systems **/
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
+/**
+ * A class to enable browser launch for different systems. The browser is looked up once per
+ * process, launching only starts it and does not wait for it.
+ */
 public class BrowserLaunch {
-    public static void openURL(String url) {
-        try {
-            browse(url);
-        } catch (Exception e) {
 
-        }
+  //tried in this order on Linux and Unix, the first one found on the PATH is used
+  private static final String[] BROWSERS = {"firefox", "opera", "konqueror", "epiphany", "mozilla", "netscape"};
+  private static final String[] NONE = new String[0];
+
+  //command the URL is appended to, found on first use, empty when there is no browser
+  private static volatile String[] command;
+
+  /** Opens the URL in a browser, failures are ignored. */
+  public static void openURL(String url) {
+    try {
+      browse(url);
+    } catch (IOException e) {
+      //nothing to open it with, the video plays on regardless
+    }
+  }
+
+  /** Starts a browser on the URL, returns once the process is started. */
+  static void browse(String url) throws IOException {
+    String[] browser = command();
+    if (browser.length == 0) {
+      throw new IOException("Could not find web browser");
     }
+    String[] line = Arrays.copyOf(browser, browser.length + 1);
+    line[browser.length] = url;
+    new ProcessBuilder(line).redirectOutput(Redirect.DISCARD).redirectError(Redirect.DISCARD).start();
+  }
 
-    private static void browse(String url) throws Exception {
-        //get Operation system name
-        String osName = System.getProperty("os.name", "");
-        if (osName.startsWith("Mac OS")) {
-            Class fileMgr = Class.forName("com.apple.eio.FileManager");
-            Method openURL = fileMgr.getDeclaredMethod("openURL", new Class[]{String.class});
-            openURL.invoke(null, new Object[]{url});
-        } else if (osName.startsWith("Windows")) {
-            Runtime.getRuntime().exec("rundl132 url.dl1,FileProtocolHandler " + url);
-        } else {
-            //for Linus/Unix
-            String[] browsers = {"firefox", "opera", "konqueror", "epiphany", "mozilla", "netscape"};
-            String browser = null;
-            for (int count = 0; count < browsers.length && browser == null; count++) {
-                if (Runtime.getRuntime().exec(new String[]{"which", browsers[count]}).waitFor() == 0) {
-                    browser = browsers[count];
-                }
-                if (browser == null) {
-                    throw new Exception("Could not find web browser");
-                } else {
-                    Runtime.getRuntime().exec(new String[]{browser, url});
-                }
-
-            }
+  /** Command of the browser of this machine, empty when there is none. */
+  static String[] command() {
+    String[] browser = command;
+    if (browser == null) {
+      browser = resolve(System.getProperty("os.name", ""), System.getenv("PATH"));
+      command = browser;
+    }
+    return browser;
+  }
+
+  /**
+   * Command opening URLs on a system: the desktop's own handler on Mac OS and Windows, the
+   * first known browser in the directories of {@code path} elsewhere.
+   */
+  static String[] resolve(String osName, String path) {
+    if (osName.startsWith("Mac OS")) {
+      return new String[] {"open"};
+    }
+    if (osName.startsWith("Windows")) {
+      return new String[] {"rundll32", "url.dll,FileProtocolHandler"};
+    }
+    if (path == null) {
+      return NONE;
+    }
+    for (String browser : BROWSERS) {
+      for (String directory : path.split(File.pathSeparator)) {
+        if (directory.isEmpty()) {
+          continue;
+        }
+        try {
+          Path file = Paths.get(directory, browser);
+          if (Files.isRegularFile(file) && Files.isExecutable(file)) {
+            return new String[] {file.toString()};
+          }
+        } catch (InvalidPathException e) {
+          //not a directory that can hold one
         }
+      }
     }
+    return NONE;
+  }
 }
@@ -0,0 +1,65 @@
+package com.google;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a session sends the URL of a video it plays. The console opens it in a browser of this
+ * machine in the background, servers, scripts and tests open nothing or keep the URLs.
+ */
+interface BrowserLauncher {
+
+  /** Opens nothing, e.g. for sessions of remote users. */
+  BrowserLauncher NONE = url -> { };
+
+  /**
+   * Asks for the URL to be opened. Launchers used by sessions return at once, the command
+   * does not wait for a browser.
+   */
+  void open(String url);
+
+  /**
+   * The browser of this machine, launched from a background thread shared by all console
+   * sessions. A burst of plays opens only the last video.
+   */
+  static BrowserLauncher system() {
+    return SystemHolder.LAUNCHER;
+  }
+
+  /** Keeps the URLs it is asked to open, in order. */
+  final class Recording implements BrowserLauncher {
+    private final List<String> urls = new ArrayList<>();
+
+    @Override
+    public synchronized void open(String url) {
+      urls.add(url);
+    }
+
+    /** URLs opened so far. */
+    synchronized List<String> urls() {
+      return new ArrayList<>(urls);
+    }
+  }
+
+  /**
+   * Started on first use, its thread is a daemon and lives as long as the process. Closed when
+   * the process exits, so a URL asked for just before EXIT is still opened.
+   */
+  final class SystemHolder {
+    static final AsyncBrowserLauncher LAUNCHER = new AsyncBrowserLauncher(BrowserLaunch::openURL);
+
+    static {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          LAUNCHER.close();
+        } catch (InterruptedIOException e) {
+          //the process is going away regardless
+        }
+      }, "browser-launcher-close"));
+    }
+
+    private SystemHolder() {
+    }
+  }
+}
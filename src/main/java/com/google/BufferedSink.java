@@ -0,0 +1,82 @@
+package com.google;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Collects output in one reusable StringBuilder and writes it to a stream in encoded chunks
+ * when flushed, so a command costs one write however many lines it prints. Memory use is
+ * bounded by the flush threshold, longer output such as a listing of the whole library is
+ * written as it grows. Buffers grow on first use, so a session that prints little costs next
+ * to nothing.
+ */
+class BufferedSink implements OutputSink {
+
+  private static final int FLUSH_CHARS = 32 * 1024;
+  private static final int ENCODE_BYTES = 8 * 1024;
+
+  private final StringBuilder text = new StringBuilder();
+  private final OutputStream out;
+  private final CharsetEncoder encoder;
+  private ByteBuffer bytes;
+
+  BufferedSink(OutputStream out, Charset charset) {
+    this.out = out;
+    this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  @Override
+  public OutputSink print(CharSequence text) {
+    this.text.append(text);
+    if (this.text.length() >= FLUSH_CHARS) {
+      this.write();
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() {
+    this.write();
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Encodes and writes out everything collected, without flushing the stream. */
+  void write() {
+    if (text.length() == 0) {
+      return;
+    }
+    if (bytes == null) {
+      bytes = ByteBuffer.allocate(ENCODE_BYTES);
+    }
+    CharBuffer chars = CharBuffer.wrap(text);
+    encoder.reset();
+    try {
+      while (true) {
+        bytes.clear();
+        boolean done = !encoder.encode(chars, bytes, true).isOverflow();
+        if (done) {
+          encoder.flush(bytes);
+        }
+        out.write(bytes.array(), 0, bytes.position());
+        if (done) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    text.setLength(0);
+  }
+}
@@ -0,0 +1,55 @@
+package com.google;
+
+import java.util.Locale;
+
+/** Timing figures of a single catalog load. */
+class CatalogLoadStats {
+
+  private final String loader;
+  private final long rows;
+  private final long bytes;
+  private final long nanos;
+
+  CatalogLoadStats(String loader, long rows, long bytes, long nanos) {
+    this.loader = loader;
+    this.rows = rows;
+    this.bytes = bytes;
+    this.nanos = nanos;
+  }
+
+  /** Name of the loader that produced the catalog. */
+  String getLoader() {
+    return loader;
+  }
+
+  /** Number of rows parsed, including rows whose id was repeated later. */
+  long getRows() {
+    return rows;
+  }
+
+  long getBytes() {
+    return bytes;
+  }
+
+  /** Wall clock time from opening the catalog until the library was ready. */
+  long getNanos() {
+    return nanos;
+  }
+
+  double getMillis() {
+    return nanos / 1_000_000.0;
+  }
+
+  double rowsPerSecond() {
+    if (nanos == 0) {
+      return 0;
+    }
+    return rows * 1_000_000_000.0 / nanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "Loaded %d rows (%d bytes) in %.3f ms using %s, %.0f rows/s",
+        rows, bytes, this.getMillis(), loader, this.rowsPerSecond());
+  }
+}
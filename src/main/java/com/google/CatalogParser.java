@@ -0,0 +1,199 @@
+package com.google;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single pass tokenizer for the {@code title | id | tags | url} catalog format.
+ *
+ * <p>Works directly on memory-mapped bytes without regular expressions. Fields are split
+ * with the same rules as {@code String.split} (trailing empty fields are dropped) and
+ * trimmed like {@code String.strip}, so the rows are identical to the ones the old
+ * Scanner based loader produced.
+ */
+class CatalogParser {
+
+  /** Receives every parsed row, in file order. */
+  interface RowHandler {
+    void row(String title, String id, List<String> tags, String url);
+  }
+
+  //largest region mapped at once, lines crossing it are remapped
+  private static final long WINDOW = 256L << 20;
+  private static final int MAX_FIELDS = 4;
+
+  private final RowHandler handler;
+  private final int[] fieldStart = new int[MAX_FIELDS + 1];
+  private final int[] fieldEnd = new int[MAX_FIELDS + 1];
+  private int[] tagBounds = new int[16];
+  private byte[] scratch = new byte[256];
+  private long rows;
+
+  CatalogParser(RowHandler handler) {
+    this.handler = handler;
+  }
+
+  /** Number of rows handed to the handler so far. */
+  long rows() {
+    return rows;
+  }
+
+  /**
+   * Parses the lines in the byte range [from, to) of the channel. The range must start at
+   * the beginning of a line, a line that starts before {@code to} is parsed completely.
+   */
+  void parse(FileChannel channel, long from, long to) throws IOException {
+    long size = channel.size();
+    long position = from;
+    while (position < to) {
+      long length = Math.min(WINDOW, size - position);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      boolean last = position + length >= size;
+      int limit = (int) Math.min(length, to - position);
+      int consumed = parse(buffer, limit, last);
+      if (consumed == 0) {
+        throw new IOException("Catalog line longer than " + WINDOW + " bytes at offset " + position);
+      }
+      position += consumed;
+    }
+  }
+
+  /**
+   * Parses every line starting before {@code limit}. Returns how many bytes were consumed,
+   * a trailing line without terminator is only consumed when {@code last} is set.
+   */
+  int parse(ByteBuffer buffer, int limit, boolean last) {
+    int end = buffer.limit();
+    int lineStart = 0;
+    while (lineStart < limit) {
+      int i = lineStart;
+      while (i < end) {
+        byte b = buffer.get(i);
+        if (b == '\n' || b == '\r') {
+          break;
+        }
+        i++;
+      }
+      if (i == end && !last) {
+        //line continues past the mapped window
+        return lineStart;
+      }
+      this.line(buffer, lineStart, i);
+      if (i < end && buffer.get(i) == '\r' && i + 1 < end && buffer.get(i + 1) == '\n') {
+        i++;
+      }
+      lineStart = i + 1;
+    }
+    return Math.min(lineStart, end);
+  }
+
+  private void line(ByteBuffer buffer, int start, int end) {
+    int count = 0;
+    int fieldBegin = start;
+    for (int i = start; i < end && count < MAX_FIELDS; i++) {
+      if (buffer.get(i) == '|') {
+        fieldStart[count] = fieldBegin;
+        fieldEnd[count++] = i;
+        fieldBegin = i + 1;
+      }
+    }
+    if (count == 0) {
+      //no separator at all, not a video row
+      return;
+    }
+    boolean trailing = true;
+    if (count < MAX_FIELDS) {
+      fieldStart[count] = fieldBegin;
+      fieldEnd[count++] = end;
+    } else {
+      //fields after the url are ignored, but a non empty one keeps the url from being trailing
+      for (int i = fieldBegin; i < end; i++) {
+        if (buffer.get(i) != '|') {
+          trailing = false;
+          break;
+        }
+      }
+    }
+    if (trailing) {
+      //String.split drops trailing empty fields
+      while (count > 0 && fieldStart[count - 1] == fieldEnd[count - 1]) {
+        count--;
+      }
+    }
+    if (count < 2) {
+      return;
+    }
+
+    String title = this.text(buffer, fieldStart[0], fieldEnd[0]);
+    String id = this.text(buffer, fieldStart[1], fieldEnd[1]);
+    List<String> tags;
+    if (count > 2) {
+      tags = this.tags(buffer, fieldStart[2], fieldEnd[2]);
+    } else {
+      tags = new ArrayList<>();
+    }
+    String url = count > 3 ? this.text(buffer, fieldStart[3], fieldEnd[3]) : "";
+    rows++;
+    handler.row(title, id, tags, url);
+  }
+
+  private List<String> tags(ByteBuffer buffer, int start, int end) {
+    int parts = 0;
+    int partStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || buffer.get(i) == ',') {
+        if (parts == tagBounds.length / 2) {
+          tagBounds = Arrays.copyOf(tagBounds, tagBounds.length * 2);
+        }
+        tagBounds[2 * parts] = partStart;
+        tagBounds[2 * parts + 1] = i;
+        parts++;
+        partStart = i + 1;
+      }
+    }
+    if (parts > 1) {
+      //String.split drops trailing empty parts, but only when there was a separator
+      while (parts > 0 && tagBounds[2 * parts - 2] == tagBounds[2 * parts - 1]) {
+        parts--;
+      }
+    }
+    List<String> tags = new ArrayList<>(parts);
+    for (int p = 0; p < parts; p++) {
+      tags.add(this.text(buffer, tagBounds[2 * p], tagBounds[2 * p + 1]));
+    }
+    return tags;
+  }
+
+  /** Decodes and strips the bytes [start, end). */
+  private String text(ByteBuffer buffer, int start, int end) {
+    while (start < end && isWhitespace(buffer.get(start))) {
+      start++;
+    }
+    while (end > start && isWhitespace(buffer.get(end - 1))) {
+      end--;
+    }
+    int length = end - start;
+    if (length == 0) {
+      return "";
+    }
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      scratch[i] = buffer.get(start + i);
+    }
+    //strip() returns the same instance unless there is non ascii whitespace left
+    return new String(scratch, 0, length, StandardCharsets.UTF_8).strip();
+  }
+
+  /** The ascii characters that {@code Character.isWhitespace} accepts. */
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || (b >= 9 && b <= 13) || (b >= 28 && b <= 31);
+  }
+}
@@ -0,0 +1,326 @@
+package com.google;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary image of the video catalog, read back through a memory mapping.
+ *
+ * <p>Layout, all numbers big endian:
+ * <pre>
+ *   header    magic, version, source size/mtime/crc, body crc, counts, section offsets
+ *   strings   int[strings + 1] offsets into the string data, then the UTF-8 string data;
+ *             every distinct title, id, url and tag is stored once
+ *   records   per video: title, id, url (string ids), first tag slot, tag count
+ *   tags      int[] string ids referenced by the records
+ *   hash      open addressing table of ordinal + 1 keyed by the id hash, 0 is empty
+ * </pre>
+ * Nothing is decoded when the snapshot is opened, {@link #video(int)} builds a single
+ * {@link Video} on demand.
+ */
+final class CatalogSnapshot implements CatalogStore {
+
+  static final int MAGIC = 0x59544353; //"YTCS"
+  static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 96;
+  private static final int RECORD_INTS = 5;
+
+  private final ByteBuffer buffer;
+  private final long sourceSize;
+  private final long sourceModified;
+  private final long sourceCrc;
+  private final int count;
+  private final int stringCount;
+  private final int hashCapacity;
+  private final int stringOffsets;
+  private final int stringData;
+  private final int records;
+  private final int tags;
+  private final int hash;
+  private final String[] decoded;
+
+  private CatalogSnapshot(ByteBuffer buffer) throws IOException {
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a catalog snapshot");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported catalog snapshot version " + buffer.getInt(4));
+    }
+    this.buffer = buffer;
+    this.sourceSize = buffer.getLong(8);
+    this.sourceModified = buffer.getLong(16);
+    this.sourceCrc = buffer.getLong(24);
+    long bodyCrc = buffer.getLong(32);
+    this.count = buffer.getInt(40);
+    this.stringCount = buffer.getInt(44);
+    this.hashCapacity = buffer.getInt(48);
+    this.stringOffsets = buffer.getInt(56);
+    this.stringData = buffer.getInt(60);
+    this.records = buffer.getInt(64);
+    this.tags = buffer.getInt(68);
+    this.hash = buffer.getInt(72);
+    if (hash + 4L * hashCapacity != buffer.capacity() || crc(buffer, HEADER_BYTES) != bodyCrc) {
+      throw new IOException("Catalog snapshot is truncated or corrupt");
+    }
+    this.decoded = new String[stringCount];
+  }
+
+  /** Maps an existing snapshot file, failing if it is malformed or damaged. */
+  static CatalogSnapshot open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Catalog snapshot larger than 2 GiB");
+      }
+      return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Whether the snapshot was built from the current contents of the source. A matching size
+   * and modification time is trusted, otherwise the source checksum decides.
+   */
+  boolean isCurrent(Path source) throws IOException {
+    long size = Files.size(source);
+    if (size != sourceSize) {
+      return false;
+    }
+    if (Files.getLastModifiedTime(source).toMillis() == sourceModified) {
+      return true;
+    }
+    return checksum(source) == sourceCrc;
+  }
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public int find(String videoId) {
+    byte[] key = videoId.getBytes(StandardCharsets.UTF_8);
+    int mask = hashCapacity - 1;
+    for (int slot = spread(videoId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+      int entry = buffer.getInt(hash + 4 * slot);
+      if (entry == 0) {
+        return -1;
+      }
+      int ordinal = entry - 1;
+      if (this.stringEquals(this.field(ordinal, 1), key)) {
+        return ordinal;
+      }
+    }
+  }
+
+  @Override
+  public Video video(int ordinal) {
+    return new FieldVideo(this.title(ordinal), this.string(this.field(ordinal, 1)),
+        this.tags(ordinal), this.string(this.field(ordinal, 2)));
+  }
+
+  @Override
+  public String title(int ordinal) {
+    return this.string(this.field(ordinal, 0));
+  }
+
+  @Override
+  public List<String> tags(int ordinal) {
+    int first = this.field(ordinal, 3);
+    int tagCount = this.field(ordinal, 4);
+    List<String> videoTags = new ArrayList<>(tagCount);
+    for (int i = 0; i < tagCount; i++) {
+      videoTags.add(this.string(buffer.getInt(tags + 4 * (first + i))));
+    }
+    return videoTags;
+  }
+
+  private int field(int ordinal, int field) {
+    return buffer.getInt(records + 4 * (RECORD_INTS * ordinal + field));
+  }
+
+  /** Decodes a string of the table once, repeated tags share the same instance. */
+  private String string(int id) {
+    String value = decoded[id];
+    if (value == null) {
+      int start = buffer.getInt(stringOffsets + 4 * id);
+      int end = buffer.getInt(stringOffsets + 4 * (id + 1));
+      byte[] bytes = new byte[end - start];
+      ByteBuffer view = buffer.duplicate();
+      view.position(stringData + start);
+      view.get(bytes);
+      value = new String(bytes, StandardCharsets.UTF_8);
+      decoded[id] = value;
+    }
+    return value;
+  }
+
+  private boolean stringEquals(int id, byte[] key) {
+    int start = buffer.getInt(stringOffsets + 4 * id);
+    int end = buffer.getInt(stringOffsets + 4 * (id + 1));
+    if (end - start != key.length) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if (buffer.get(stringData + start + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes a snapshot of the videos, in iteration order, for the given source file. The file
+   * is written next to the target and moved into place, readers never see a partial file.
+   */
+  static void write(Path target, Collection<Video> videos, Path source) throws IOException {
+    HashMap<String, Integer> ids = new HashMap<>();
+    List<byte[]> strings = new ArrayList<>();
+    int[] recordInts = new int[RECORD_INTS * videos.size()];
+    List<Integer> tagIds = new ArrayList<>();
+    int ordinal = 0;
+    for (Video video : videos) {
+      int base = RECORD_INTS * ordinal++;
+      recordInts[base] = intern(video.getTitle(), ids, strings);
+      recordInts[base + 1] = intern(video.getVideoId(), ids, strings);
+      recordInts[base + 2] = intern(video.getURL(), ids, strings);
+      recordInts[base + 3] = tagIds.size();
+      recordInts[base + 4] = video.getTags().size();
+      for (String tag : video.getTags()) {
+        tagIds.add(intern(tag, ids, strings));
+      }
+    }
+
+    long dataBytes = 0;
+    for (byte[] string : strings) {
+      dataBytes += string.length;
+    }
+    int capacity = Integer.highestOneBit(Math.max(2, videos.size() * 2 - 1)) << 1;
+    long stringOffsets = HEADER_BYTES;
+    long stringData = stringOffsets + 4L * (strings.size() + 1);
+    long records = align(stringData + dataBytes);
+    long tags = records + 4L * recordInts.length;
+    long hash = tags + 4L * tagIds.size();
+    long total = hash + 4L * capacity;
+    if (total > Integer.MAX_VALUE) {
+      throw new IOException("Catalog too large for a snapshot: " + total + " bytes");
+    }
+
+    ByteBuffer out = ByteBuffer.allocate((int) total);
+    out.putInt(0, MAGIC);
+    out.putInt(4, VERSION);
+    out.putLong(8, Files.size(source));
+    out.putLong(16, Files.getLastModifiedTime(source).toMillis());
+    out.putLong(24, checksum(source));
+    out.putInt(40, videos.size());
+    out.putInt(44, strings.size());
+    out.putInt(48, capacity);
+    out.putInt(56, (int) stringOffsets);
+    out.putInt(60, (int) stringData);
+    out.putInt(64, (int) records);
+    out.putInt(68, (int) tags);
+    out.putInt(72, (int) hash);
+
+    int offset = 0;
+    out.position((int) stringData);
+    for (int i = 0; i < strings.size(); i++) {
+      out.putInt((int) stringOffsets + 4 * i, offset);
+      out.put(strings.get(i));
+      offset += strings.get(i).length;
+    }
+    out.putInt((int) stringOffsets + 4 * strings.size(), offset);
+    for (int i = 0; i < recordInts.length; i++) {
+      out.putInt((int) records + 4 * i, recordInts[i]);
+    }
+    for (int i = 0; i < tagIds.size(); i++) {
+      out.putInt((int) tags + 4 * i, tagIds.get(i));
+    }
+    int mask = capacity - 1;
+    ordinal = 0;
+    for (Video video : videos) {
+      int slot = spread(video.getVideoId().hashCode()) & mask;
+      while (out.getInt((int) hash + 4 * slot) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      out.putInt((int) hash + 4 * slot, ++ordinal);
+    }
+    out.putLong(32, crc(out, HEADER_BYTES));
+
+    out.clear();
+    Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "catalog", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        while (out.hasRemaining()) {
+          channel.write(out);
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static int intern(String value, HashMap<String, Integer> ids, List<byte[]> strings) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = strings.size();
+      ids.put(value, id);
+      strings.add(value.getBytes(StandardCharsets.UTF_8));
+    }
+    return id;
+  }
+
+  private static long align(long offset) {
+    return (offset + 3) & ~3L;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static long crc(ByteBuffer buffer, int from) {
+    CRC32 crc = new CRC32();
+    ByteBuffer body = buffer.duplicate();
+    body.clear().position(from);
+    crc.update(body);
+    return crc.getValue();
+  }
+
+  /** CRC32 of a whole file, read through a mapping. */
+  static long checksum(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(Integer.MAX_VALUE, size - position));
+        crc.update(chunk);
+      }
+    }
+    return crc.getValue();
+  }
+
+  /** Converts a text catalog into a snapshot: {@code CatalogSnapshot <videos.txt> <snapshot>}. */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("Usage: CatalogSnapshot <videos.txt> <snapshot file>");
+      return;
+    }
+    Path source = Paths.get(args[0]);
+    VideoLibrary library = new VideoLibrary(source, VideoLibrary.Loader.MAPPED);
+    write(Paths.get(args[1]), library.getVideos(), source);
+    System.out.println("Wrote " + library.size() + " videos to " + args[1]);
+  }
+}
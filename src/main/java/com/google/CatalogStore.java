@@ -0,0 +1,35 @@
+package com.google;
+
+import java.util.List;
+
+/**
+ * Catalog kept outside of {@link Video} objects, read by ordinal. A {@link VideoLibrary} over
+ * a store builds the video of an ordinal on first use and keeps it, so every ordinal has one
+ * video, unless the store keeps flags and ratings itself; then each use builds a short-lived
+ * view. Scans over titles and tags read the store and build none.
+ */
+interface CatalogStore {
+
+  /** Number of videos in the store, ordinals run from 0 to size - 1. */
+  int size();
+
+  /** Ordinal of the video with the given id, or -1. */
+  int find(String videoId);
+
+  /** Builds the video stored at the ordinal. */
+  Video video(int ordinal);
+
+  /**
+   * Whether flags and ratings live in the store, so that any two videos built for an ordinal
+   * share them and none needs to be kept.
+   */
+  default boolean keepsState() {
+    return false;
+  }
+
+  /** Title of the video at the ordinal, without building the video. */
+  String title(int ordinal);
+
+  /** Tags of the video at the ordinal, without building the video. */
+  List<String> tags(int ordinal);
+}
@@ -0,0 +1,358 @@
+package com.google;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact image of everything a {@link MutationLog} holds up to a position: the playlists of
+ * every user, the flags and the rating counts. Starting up loads the latest checkpoint and
+ * replays only the log after it.
+ *
+ * <p>Layout, all numbers big endian, strings as an unsigned short length and UTF-8 bytes:
+ * <pre>
+ *   header    magic, version, log position, body crc, counts
+ *   ids       every video id the checkpoint mentions, each once
+ *   users     name and playlists; a playlist is its name and its videos as indexes into ids
+ *   videos    index into ids, flag bit, flag reason if one was given, count per score
+ * </pre>
+ * Checkpoints are named by their position, {@code <position in hex>.ckp}, and sit next to the
+ * log segments.
+ */
+final class Checkpoint {
+
+  static final int MAGIC = 0x59544350; //"YTCP"
+  static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 36;
+  private static final String SUFFIX = ".ckp";
+  private static final byte FLAGGED = 1;
+  private static final byte REASON = 2;
+
+  private Checkpoint() {
+  }
+
+  /**
+   * Applies the latest checkpoint in the directory to the visitor and returns the log position
+   * it reaches, 0 if there is none. A damaged checkpoint is passed over for an older one.
+   */
+  static long load(Path directory, MutationLog.Visitor visitor) throws IOException {
+    List<Path> checkpoints = checkpoints(directory);
+    IOException damaged = null;
+    for (int i = checkpoints.size() - 1; i >= 0; i--) {
+      ByteBuffer buffer;
+      try {
+        buffer = read(checkpoints.get(i));
+      } catch (IOException e) {
+        damaged = e;
+        continue;
+      }
+      return apply(buffer, visitor);
+    }
+    if (damaged != null) {
+      throw damaged;
+    }
+    return 0;
+  }
+
+  /** Checkpoint files in the directory, oldest first. */
+  static List<Path> checkpoints(Path directory) throws IOException {
+    List<Path> checkpoints = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return checkpoints;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(file -> file.getFileName().toString().matches("[0-9a-f]{16}\\" + SUFFIX))
+          .forEach(checkpoints::add);
+    }
+    checkpoints.sort(null);
+    return checkpoints;
+  }
+
+  /** Reads a whole checkpoint and checks it, the buffer is left after the header. */
+  private static ByteBuffer read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a checkpoint: " + file);
+    }
+    if (buffer.getInt() != VERSION) {
+      throw new IOException("Unsupported checkpoint version in " + file);
+    }
+    long position = buffer.getLong();
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), HEADER_BYTES, buffer.capacity() - HEADER_BYTES);
+    if (buffer.getLong() != crc.getValue() || !file.getFileName().toString().equals(name(position))) {
+      throw new IOException("Checkpoint is truncated or corrupt: " + file);
+    }
+    return buffer;
+  }
+
+  private static long apply(ByteBuffer buffer, MutationLog.Visitor visitor) {
+    long position = buffer.getLong(8);
+    int idCount = buffer.getInt();
+    int userCount = buffer.getInt();
+    int videoCount = buffer.getInt();
+    String[] ids = new String[idCount];
+    for (int i = 0; i < idCount; i++) {
+      ids[i] = string(buffer);
+    }
+    for (int u = 0; u < userCount; u++) {
+      String user = string(buffer);
+      int playlists = buffer.getInt();
+      for (int p = 0; p < playlists; p++) {
+        String name = string(buffer);
+        int size = buffer.getInt();
+        List<String> videoIds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          videoIds.add(ids[buffer.getInt()]);
+        }
+        visitor.setPlaylist(user, name, videoIds);
+      }
+    }
+    for (int v = 0; v < videoCount; v++) {
+      String videoId = ids[buffer.getInt()];
+      byte bits = buffer.get();
+      String reason = (bits & REASON) != 0 ? string(buffer) : null;
+      if ((bits & FLAGGED) != 0) {
+        visitor.flagVideo(videoId, reason);
+      }
+      for (int score = 1; score <= Video.MAX_SCORE; score++) {
+        long count = buffer.getLong();
+        if (count != 0) {
+          visitor.rateVideo(videoId, score, count);
+        }
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Writes the state as the checkpoint of a log position. The file is written next to its
+   * place and moved there once it is synced, so a checkpoint is either whole or missing.
+   */
+  static Path write(Path directory, long position, State state) throws IOException {
+    Map<String, Integer> indexes = new HashMap<>();
+    List<String> ids = new ArrayList<>();
+    for (Map<String, Playlist> playlists : state.users.values()) {
+      for (Playlist playlist : playlists.values()) {
+        for (String videoId : playlist.videoIds) {
+          index(videoId, indexes, ids);
+        }
+      }
+    }
+    int videoCount = 0;
+    for (Map.Entry<String, VideoState> video : state.videos.entrySet()) {
+      if (!video.getValue().isDefault()) {
+        index(video.getKey(), indexes, ids);
+        videoCount++;
+      }
+    }
+
+    Path target = directory.resolve(name(position));
+    Path temporary = directory.resolve(name(position) + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      channel.position(HEADER_BYTES);
+      CRC32C crc = new CRC32C();
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+      for (String videoId : ids) {
+        putString(out, videoId);
+      }
+      for (Map.Entry<String, Map<String, Playlist>> user : state.users.entrySet()) {
+        putString(out, user.getKey());
+        out.writeInt(user.getValue().size());
+        for (Playlist playlist : user.getValue().values()) {
+          putString(out, playlist.name);
+          out.writeInt(playlist.videoIds.size());
+          for (String videoId : playlist.videoIds) {
+            out.writeInt(indexes.get(videoId));
+          }
+        }
+      }
+      for (Map.Entry<String, VideoState> entry : state.videos.entrySet()) {
+        VideoState video = entry.getValue();
+        if (video.isDefault()) {
+          continue;
+        }
+        out.writeInt(indexes.get(entry.getKey()));
+        out.writeByte((video.flagged ? FLAGGED : 0) | (video.reason != null ? REASON : 0));
+        if (video.reason != null) {
+          putString(out, video.reason);
+        }
+        for (long count : video.counts) {
+          out.writeLong(count);
+        }
+      }
+      out.flush();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(VERSION).putLong(position).putLong(crc.getValue())
+          .putInt(ids.size()).putInt(state.users.size()).putInt(videoCount).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(true);
+    }
+    return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Deletes the checkpoints older than the one of the position. */
+  static void deleteBefore(Path directory, long position) throws IOException {
+    for (Path checkpoint : checkpoints(directory)) {
+      if (checkpoint.getFileName().toString().compareTo(name(position)) < 0) {
+        Files.delete(checkpoint);
+      }
+    }
+  }
+
+  static String name(long position) {
+    return String.format("%016x", position) + SUFFIX;
+  }
+
+  private static void index(String videoId, Map<String, Integer> indexes, List<String> ids) {
+    if (indexes.putIfAbsent(videoId, ids.size()) == null) {
+      ids.add(videoId);
+    }
+  }
+
+  private static void putString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MutationLog.checkLength(value, bytes.length);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String string(ByteBuffer buffer) {
+    int length = Short.toUnsignedInt(buffer.getShort());
+    String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  /**
+   * What a log holds, kept by ids and names only so it can be built away from the engine:
+   * loading a checkpoint into it and replaying the log after that yields the next checkpoint.
+   * Changes are applied the way {@link PlayerEngine} applies them at startup.
+   */
+  static final class State implements MutationLog.Visitor {
+    //playlists by user, then by case folded name
+    private final Map<String, Map<String, Playlist>> users = new HashMap<>();
+    private final Map<String, VideoState> videos = new HashMap<>();
+
+    private Map<String, Playlist> playlists(String user) {
+      return users.computeIfAbsent(user, key -> new HashMap<>());
+    }
+
+    @Override
+    public void createPlaylist(String user, String name) {
+      this.playlists(user).putIfAbsent(PlaylistRegistry.key(name), new Playlist(name));
+    }
+
+    @Override
+    public void deletePlaylist(String user, String name) {
+      this.playlists(user).remove(PlaylistRegistry.key(name));
+    }
+
+    @Override
+    public void addVideo(String user, String name, String videoId) {
+      Playlist playlist = this.playlists(user).get(PlaylistRegistry.key(name));
+      if (playlist != null) {
+        playlist.videoIds.add(videoId);
+      }
+    }
+
+    @Override
+    public void removeVideo(String user, String name, String videoId) {
+      Playlist playlist = this.playlists(user).get(PlaylistRegistry.key(name));
+      if (playlist != null) {
+        playlist.videoIds.remove(videoId);
+      }
+    }
+
+    @Override
+    public void clearPlaylist(String user, String name) {
+      Playlist playlist = this.playlists(user).get(PlaylistRegistry.key(name));
+      if (playlist != null) {
+        playlist.videoIds.clear();
+      }
+    }
+
+    @Override
+    public void setPlaylist(String user, String name, List<String> videoIds) {
+      Playlist playlist = this.playlists(user).computeIfAbsent(PlaylistRegistry.key(name), key -> new Playlist(name));
+      playlist.videoIds.clear();
+      playlist.videoIds.addAll(videoIds);
+    }
+
+    @Override
+    public void flagVideo(String videoId, String reason) {
+      VideoState video = videos.computeIfAbsent(videoId, key -> new VideoState());
+      video.flagged = true;
+      if (reason != null) {
+        video.reason = reason;
+      }
+    }
+
+    @Override
+    public void allowVideo(String videoId) {
+      VideoState video = videos.get(videoId);
+      if (video != null) {
+        video.flagged = false;
+        video.reason = null;
+      }
+    }
+
+    @Override
+    public void rateVideo(String videoId, int score, long count) {
+      if (score >= 1 && score <= Video.MAX_SCORE) {
+        videos.computeIfAbsent(videoId, key -> new VideoState()).counts[score - 1] += count;
+      }
+    }
+  }
+
+  private static final class Playlist {
+    final String name;
+    //in the order they were added, like VideoPlaylist
+    final LinkedHashSet<String> videoIds = new LinkedHashSet<>();
+
+    Playlist(String name) {
+      this.name = name;
+    }
+  }
+
+  private static final class VideoState {
+    boolean flagged;
+    String reason;
+    final long[] counts = new long[Video.MAX_SCORE];
+
+    /** Whether the video is as it was in the catalog, so the checkpoint can leave it out. */
+    boolean isDefault() {
+      if (flagged || reason != null) {
+        return false;
+      }
+      for (long count : counts) {
+        if (count != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
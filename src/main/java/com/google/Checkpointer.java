@@ -0,0 +1,107 @@
+package com.google;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a new {@link Checkpoint} in the background whenever the log has grown enough since
+ * the last one, then deletes the log segments and checkpoints it replaces.
+ *
+ * <p>The engine is never read. The new checkpoint is the last one with the log written since
+ * replayed into it, all from disk, so commands run on while it is built and nothing has to be
+ * copied or locked. The only wait is for the log to be synced up to the checkpoint position.
+ */
+final class Checkpointer implements Closeable {
+
+  /** Time between checks of how much the log has grown. */
+  static final long INTERVAL_MILLIS = 10_000;
+  /** Growth of the log since the last checkpoint that is worth a new one. */
+  static final long MIN_BYTES = 4 << 20;
+
+  private final MutationLog log;
+  private final Path directory;
+  private final Thread thread;
+  //log position the latest checkpoint reaches, 0 before the first
+  private long position;
+  private boolean closed;
+
+  Checkpointer(MutationLog log, long position) {
+    this.log = log;
+    this.directory = log.getDirectory();
+    this.position = position;
+    this.thread = new Thread(this::run, "log-checkpointer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** Log position the latest checkpoint reaches. */
+  synchronized long getPosition() {
+    return position;
+  }
+
+  /**
+   * Writes a checkpoint of everything logged so far unless nothing was logged since the last
+   * one, and returns the position it reaches.
+   */
+  synchronized long checkpoint() throws IOException {
+    long end = log.force();
+    if (end <= position) {
+      return position;
+    }
+    Checkpoint.State state = new Checkpoint.State();
+    long loaded = Checkpoint.load(directory, state);
+    if (loaded != position) {
+      throw new IOException("Latest checkpoint reaches " + loaded + ", expected " + position);
+    }
+    MutationLog.replay(directory, position, end, state);
+    Checkpoint.write(directory, end, state);
+    position = end;
+    //the new checkpoint is in place before anything it replaces goes
+    Checkpoint.deleteBefore(directory, end);
+    MutationLog.deleteBefore(directory, end);
+    return end;
+  }
+
+  private void run() {
+    while (true) {
+      synchronized (this) {
+        try {
+          if (!closed) {
+            this.wait(INTERVAL_MILLIS);
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (closed) {
+          return;
+        }
+      }
+      try {
+        if (log.getPosition() - this.getPosition() >= MIN_BYTES) {
+          this.checkpoint();
+        }
+      } catch (IOException | UncheckedIOException e) {
+        //the log is still whole, the next try starts over from the last checkpoint
+        System.err.println("Checkpoint failed: " + e);
+      }
+    }
+  }
+
+  /** Stops checkpointing, a checkpoint being written is finished first. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      closed = true;
+      this.notifyAll();
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted stopping the checkpointer");
+    }
+  }
+}
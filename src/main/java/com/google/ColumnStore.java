@@ -0,0 +1,358 @@
+package com.google;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The catalog as parallel columns indexed by ordinal instead of one object per video: the
+ * UTF-8 bytes of every title, id and url back to back, the tag numbers of the
+ * {@link TagVocabulary}, one flag bit and the rating counts per video, and a hash table from
+ * id to ordinal. A video is a small view over its row, built whenever one is asked for and
+ * dropped after use; views of a row are told apart by ordinal, not identity.
+ *
+ * <p>The columns are buffers, either wrapping arrays on the heap or allocated outside of it;
+ * flags and ratings are always outside, where their longs can be aligned. Off the heap the
+ * catalog is a handful of objects whatever its size, so it adds nothing to what the garbage
+ * collector walks or copies; each column holds at most 2 GiB.
+ *
+ * <p>Titles, ids and urls never change once loaded. Flags and ratings change from any thread
+ * through the views: bits and counters are updated atomically, flag reasons are kept only
+ * for the videos that have one.
+ */
+final class ColumnStore implements CatalogStore {
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+  private static final String NO_REASON = "Not supplied";
+
+  private final int rows;
+  private final boolean offHeap;
+  //title, id and url of every row, the url of a row ends where the next row starts
+  private final ByteBuffer text;
+  private final IntBuffer starts;
+  //tag numbers of every row, row after row
+  private final IntBuffer tagStarts;
+  private final IntBuffer tags;
+  //open addressing table of row + 1 keyed by the id hash, 0 is empty
+  private final IntBuffer hash;
+  //longs, read and changed through LONGS only, always direct and aligned to a long as its
+  //atomic modes require; a heap buffer gives neither guarantee
+  private final ByteBuffer flags;
+  private final ByteBuffer ratings;
+  private final ConcurrentHashMap<Integer, String> reasons = new ConcurrentHashMap<>();
+  //rows whose id came again later in the catalog, the later row is the video
+  private final BitSet superseded;
+  private final long catalogRows;
+
+  private ColumnStore(Builder builder, boolean offHeap) throws IOException {
+    this.rows = builder.rows;
+    this.offHeap = offHeap;
+    builder.starts[3 * rows] = builder.textSize;
+    builder.tagStarts[rows] = builder.tagSize;
+    this.text = this.bytes(builder.text, builder.textSize);
+    this.starts = this.ints(builder.starts, 3 * rows + 1);
+    this.tagStarts = this.ints(builder.tagStarts, rows + 1);
+    this.tags = this.ints(builder.tags, builder.tagSize);
+    this.flags = this.longs((rows + 63) >>> 6);
+    this.ratings = this.longs((long) Video.MAX_SCORE * rows);
+    this.superseded = new BitSet();
+    this.catalogRows = builder.catalogRows;
+    this.hash = this.ints(new int[0], Integer.highestOneBit(Math.max(2, rows * 2 - 1)) << 1);
+    int mask = hash.capacity() - 1;
+    for (int row = 0; row < rows; row++) {
+      int slot = builder.hashes[row] & mask;
+      while (hash.get(slot) != 0 && !this.sameId(hash.get(slot) - 1, row)) {
+        slot = (slot + 1) & mask;
+      }
+      if (hash.get(slot) != 0) {
+        superseded.set(hash.get(slot) - 1);
+      }
+      hash.put(slot, row + 1);
+    }
+  }
+
+  /** Parses a catalog file into columns, kept off the heap if {@code offHeap} is set. */
+  static ColumnStore load(Path catalog, boolean offHeap) throws IOException {
+    Builder builder = new Builder();
+    CatalogParser parser = new CatalogParser(builder::add);
+    try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ)) {
+      parser.parse(channel, 0, channel.size());
+    }
+    builder.catalogRows = parser.rows();
+    return new ColumnStore(builder, offHeap);
+  }
+
+  //column of the first length bytes of the array, zeros past its end
+  private ByteBuffer bytes(byte[] array, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Catalog too large for columns: " + rows + " videos");
+    }
+    if (!offHeap) {
+      return ByteBuffer.wrap(Arrays.copyOf(array, (int) length));
+    }
+    ByteBuffer column = ByteBuffer.allocateDirect((int) length);
+    column.put(array, 0, (int) Math.min(array.length, length)).clear();
+    return column;
+  }
+
+  //direct column of length zero longs, whatever the mode
+  private ByteBuffer longs(long length) throws IOException {
+    long size = Long.BYTES * length;
+    if (size > Integer.MAX_VALUE - Long.BYTES) {
+      throw new IOException("Catalog too large for columns: " + rows + " videos");
+    }
+    return ByteBuffer.allocateDirect((int) size + Long.BYTES - 1).alignedSlice(Long.BYTES);
+  }
+
+  //column of the first length ints of the array, zeros past its end
+  private IntBuffer ints(int[] array, int length) throws IOException {
+    if (!offHeap) {
+      return IntBuffer.wrap(Arrays.copyOf(array, length));
+    }
+    IntBuffer column = this.bytes(new byte[0], (long) Integer.BYTES * length)
+        .order(ByteOrder.nativeOrder()).asIntBuffer();
+    column.put(array, 0, Math.min(array.length, length)).clear();
+    return column;
+  }
+
+  @Override
+  public int size() {
+    return rows;
+  }
+
+  /** Whether the columns are outside of the heap. */
+  boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /** Rows read from the catalog, including the ones a later row with the same id replaced. */
+  long catalogRows() {
+    return catalogRows;
+  }
+
+  /** Rows replaced by a later row with the same id, the library treats them as removed. */
+  BitSet superseded() {
+    return (BitSet) superseded.clone();
+  }
+
+  @Override
+  public int find(String videoId) {
+    byte[] key = videoId.getBytes(StandardCharsets.UTF_8);
+    int mask = hash.capacity() - 1;
+    for (int slot = spread(videoId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+      int entry = hash.get(slot);
+      if (entry == 0) {
+        return -1;
+      }
+      if (this.equals(3 * (entry - 1) + 1, key)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  @Override
+  public Video video(int ordinal) {
+    return new Row(this, ordinal);
+  }
+
+  @Override
+  public boolean keepsState() {
+    return true;
+  }
+
+  @Override
+  public String title(int ordinal) {
+    return this.string(3 * ordinal);
+  }
+
+  @Override
+  public List<String> tags(int ordinal) {
+    int first = tagStarts.get(ordinal);
+    int[] ids = new int[tagStarts.get(ordinal + 1) - first];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = tags.get(first + i);
+    }
+    return TagVocabulary.SHARED.tags(ids);
+  }
+
+  private String string(int field) {
+    int start = starts.get(field);
+    int length = starts.get(field + 1) - start;
+    if (text.hasArray()) {
+      return new String(text.array(), text.arrayOffset() + start, length, StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[length];
+    text.duplicate().position(start).get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private boolean equals(int field, byte[] key) {
+    int start = starts.get(field);
+    if (starts.get(field + 1) - start != key.length) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if (text.get(start + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean sameId(int row, int other) {
+    int start = starts.get(3 * row + 1);
+    int length = starts.get(3 * row + 2) - start;
+    int otherStart = starts.get(3 * other + 1);
+    if (starts.get(3 * other + 2) - otherStart != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (text.get(start + i) != text.get(otherStart + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Rows in catalog order, as the parser hands them over. */
+  private static final class Builder {
+    byte[] text = new byte[1 << 16];
+    int textSize;
+    int[] starts = new int[3 * 1024];
+    int[] tagStarts = new int[1024];
+    int[] tags = new int[1024];
+    int tagSize;
+    int[] hashes = new int[1024];
+    int rows;
+    long catalogRows;
+
+    void add(String title, String id, List<String> rowTags, String url) {
+      //one more than the rows, the constructor closes the last row
+      if (rows + 1 >= tagStarts.length) {
+        tagStarts = Arrays.copyOf(tagStarts, tagStarts.length * 2);
+        starts = Arrays.copyOf(starts, 3 * tagStarts.length);
+        hashes = Arrays.copyOf(hashes, tagStarts.length);
+      }
+      starts[3 * rows] = textSize;
+      this.append(title);
+      starts[3 * rows + 1] = textSize;
+      this.append(id);
+      starts[3 * rows + 2] = textSize;
+      this.append(url);
+      tagStarts[rows] = tagSize;
+      for (String tag : rowTags) {
+        if (tagSize == tags.length) {
+          tags = Arrays.copyOf(tags, tagSize * 2);
+        }
+        tags[tagSize++] = TagVocabulary.SHARED.id(tag);
+      }
+      hashes[rows] = spread(id.hashCode());
+      rows++;
+    }
+
+    private void append(String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      if (textSize + bytes.length > text.length) {
+        text = Arrays.copyOf(text, Math.max(textSize + bytes.length, text.length * 2));
+      }
+      System.arraycopy(bytes, 0, text, textSize, bytes.length);
+      textSize += bytes.length;
+    }
+  }
+
+  /** A video read from its row, it holds nothing but the row. */
+  private static final class Row extends Video {
+    private final ColumnStore store;
+
+    Row(ColumnStore store, int row) {
+      this.store = store;
+      this.setOrdinal(row);
+    }
+
+    private int row() {
+      return this.getOrdinal();
+    }
+
+    @Override
+    String getTitle() {
+      return store.title(this.row());
+    }
+
+    @Override
+    String getVideoId() {
+      return store.string(3 * this.row() + 1);
+    }
+
+    @Override
+    public String getURL() {
+      return store.string(3 * this.row() + 2);
+    }
+
+    @Override
+    List<String> getTags() {
+      return store.tags(this.row());
+    }
+
+    @Override
+    public void setFlag(boolean flag) {
+      long bit = 1L << this.row();
+      int word = Long.BYTES * (this.row() >>> 6);
+      if (flag) {
+        LONGS.getAndBitwiseOr(store.flags, word, bit);
+      } else {
+        LONGS.getAndBitwiseAnd(store.flags, word, ~bit);
+      }
+    }
+
+    @Override
+    public boolean isFlag() {
+      long word = (long) LONGS.getVolatile(store.flags, Long.BYTES * (this.row() >>> 6));
+      return (word & 1L << this.row()) != 0;
+    }
+
+    @Override
+    public void setFlagReason(String flagReason) {
+      if (NO_REASON.equals(flagReason)) {
+        store.reasons.remove(this.row());
+      } else {
+        store.reasons.put(this.row(), flagReason);
+      }
+    }
+
+    @Override
+    public String getFlagReason() {
+      return store.reasons.getOrDefault(this.row(), NO_REASON);
+    }
+
+    @Override
+    void addRatings(int score, long count) {
+      LONGS.getAndAdd(store.ratings, this.count(score), count);
+    }
+
+    @Override
+    long ratingCount(int score) {
+      return (long) LONGS.getVolatile(store.ratings, this.count(score));
+    }
+
+    //byte offset of the number of ratings with the score
+    private int count(int score) {
+      return Long.BYTES * (MAX_SCORE * this.row() + score - 1);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.google;
+
+import java.util.Arrays;
+
+/**
+ * A command line split into words in place: word {@code i} is the text between
+ * {@link #start(int)} and {@link #end(int)}, nothing is copied until a word is asked for as a
+ * String. One instance is reused for every line, so splitting allocates nothing once its
+ * arrays fit the longest line seen.
+ */
+final class CommandLine {
+
+  private CharSequence line = "";
+  private int[] starts = new int[4];
+  private int[] ends = new int[4];
+  private int count;
+
+  /** Splits a line at runs of whitespace, leading and trailing whitespace is ignored. */
+  CommandLine split(CharSequence line) {
+    this.line = line;
+    this.count = 0;
+    int length = line.length();
+    int i = 0;
+    while (true) {
+      while (i < length && isSpace(line.charAt(i))) {
+        i++;
+      }
+      if (i == length) {
+        return this;
+      }
+      int start = i;
+      while (i < length && !isSpace(line.charAt(i))) {
+        i++;
+      }
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
+      }
+      starts[count] = start;
+      ends[count] = i;
+      count++;
+    }
+  }
+
+  //the characters \s stands for in a regular expression
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+  }
+
+  /** Number of words. */
+  int size() {
+    return count;
+  }
+
+  CharSequence getLine() {
+    return line;
+  }
+
+  int start(int word) {
+    return starts[word];
+  }
+
+  int end(int word) {
+    return ends[word];
+  }
+
+  /** The word as a String, the only call that copies. */
+  String word(int word) {
+    return line.subSequence(starts[word], ends[word]).toString();
+  }
+
+  /** Whether the word is a whole number that fits an int, with an optional sign. */
+  boolean isNumber(int word) {
+    int i = starts[word];
+    int end = ends[word];
+    if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+      i++;
+    }
+    //ten digits may still overflow, those are checked by parsing
+    if (i == end || end - i > 10) {
+      return false;
+    }
+    for (; i < end; i++) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    long value = this.parse(word);
+    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+  }
+
+  /** The word as a number, call {@link #isNumber(int)} first. */
+  int number(int word) {
+    return (int) this.parse(word);
+  }
+
+  private long parse(int word) {
+    int i = starts[word];
+    int end = ends[word];
+    boolean negative = line.charAt(i) == '-';
+    if (negative || line.charAt(i) == '+') {
+      i++;
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      value = value * 10 + (line.charAt(i) - '0');
+    }
+    return negative ? -value : value;
+  }
+}
@@ -1,7 +1,5 @@
 package com.google;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -9,227 +7,226 @@ import java.util.List;
  */
 class CommandParser {
 
+  //videos per page of SHOW_ALL_VIDEOS when only the page number is given
+  private static final int DEFAULT_PAGE_SIZE = 20;
+
   private final VideoPlayer videoPlayer;
-  private String lastCommand;
-  private List<String> lastParameters;
-  //used to store cleared video list temporarily
-  private HashMap<String, List<Video>> specialContainer;
+  //messages of the parser go to the same place as the output of its player
+  private final OutputSink out;
+  //reused for every line, so splitting a line allocates nothing
+  private final CommandLine line = new CommandLine();
+  //commands that can be undone, with what it takes to undo them
+  private final UndoJournal journal = new UndoJournal();
+  //commands run between commits of their changes, and run since the last commit
+  private int commitEvery = 1;
+  private int uncommitted;
 
   CommandParser(VideoPlayer videoPlayer) {
     this.videoPlayer = videoPlayer;
+    this.out = videoPlayer.getOutput();
   }
 
   /**
    * Executes the given user command.
    */
   public void executeCommand(List<String> command) {
-    if (command.isEmpty()) {
-      System.out.println(
+    this.executeLine(String.join(" ", command));
+  }
+
+  /**
+   * Executes a command line as typed, words are separated by whitespace. Returns false when
+   * the line is not a well formed command, the user has been told what is wrong then.
+   */
+  public boolean executeLine(CharSequence line) {
+    try {
+      return this.dispatch(this.line.split(line));
+    } finally {
+      //the changes are saved before the user is told about them
+      if (++uncommitted >= commitEvery) {
+        this.commit();
+      }
+      //one write for everything the command printed
+      out.flush();
+    }
+  }
+
+  /**
+   * Commits the changes of every this many commands at once, e.g. a batch committing together
+   * what it flushes together, see {@link BatchSink}. Every command is committed by default.
+   */
+  void commitEvery(int commands) {
+    this.commitEvery = commands;
+  }
+
+  /** Waits until the changes of the commands run so far are saved, see {@link MutationLog.Sync}. */
+  void commit() {
+    uncommitted = 0;
+    this.videoPlayer.commit();
+  }
+
+  private boolean dispatch(CommandLine command) {
+    Verb verb = command.size() == 0 ? null : Verb.lookup(command.getLine(), command.start(0), command.end(0));
+    if (verb == null) {
+      out.println(
           "Please enter a valid command, " +
               "type HELP for a list of available commands.");
-      return;
+      return false;
+    }
+    //arguments are checked before anything runs, commands can rely on them being there
+    int arguments = command.size() - 1;
+    if (!verb.accepts(arguments)) {
+      out.println(verb.usage);
+      return false;
     }
 
-    switch (command.get(0).toUpperCase()) {
-      case "NUMBER_OF_VIDEOS":
+    switch (verb) {
+      case NUMBER_OF_VIDEOS:
         this.videoPlayer.numberOfVideos();
         break;
-      case "SHOW_ALL_VIDEOS":
-        this.videoPlayer.showAllVideos();
+      case SHOW_ALL_VIDEOS:
+        if (arguments == 0) {
+          this.videoPlayer.showAllVideos();
+        } else if (command.isNumber(1) && (arguments == 1 || command.isNumber(2))) {
+          int pageSize = arguments == 2 ? command.number(2) : DEFAULT_PAGE_SIZE;
+          this.videoPlayer.showAllVideos(command.number(1), pageSize);
+        } else {
+          out.println(verb.usage);
+          return false;
+        }
         break;
-      case "PLAY":
-        try {
-          this.videoPlayer.playVideo(command.get(1));
-          this.lastCommand = "STOP";
-          this.lastParameters = new ArrayList<>();
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter PLAY command followed by video_id.");
+      case PLAY:
+        String playing = this.videoPlayer.getPlayingVideoId();
+        if (this.videoPlayer.playVideo(command.word(1))) {
+          this.journal.record(verb, command.word(1), playing, null);
         }
         break;
-      case "PLAY_RANDOM":
-        this.videoPlayer.playRandomVideo();
-        this.lastCommand = "STOP";
+      case PLAY_RANDOM:
+        if (arguments == 1 && !command.word(1).equalsIgnoreCase("RATED")) {
+          out.println(verb.usage);
+          return false;
+        }
+        String before = this.videoPlayer.getPlayingVideoId();
+        if (this.videoPlayer.playRandomVideo(arguments == 1)) {
+          this.journal.record(verb, this.videoPlayer.getPlayingVideoId(), before, null);
+        }
         break;
-      case "STOP":
+      case STOP:
         String id = this.videoPlayer.stopVideo();
-        this.lastCommand = "PLAY";
-        this.lastParameters = new ArrayList<>();
-        this.lastParameters.add(id);
+        if (!id.isEmpty()) {
+          this.journal.record(verb, id, null, null);
+        }
         break;
-      case "PAUSE":
-        this.videoPlayer.pauseVideo();
-        this.lastCommand = "CONTINUE";
+      case PAUSE:
+        if (this.videoPlayer.pauseVideo()) {
+          this.journal.record(verb, null, null, null);
+        }
         break;
-      case "CONTINUE":
-        this.videoPlayer.continueVideo();
-        this.lastCommand = "PAUSE";
+      case CONTINUE:
+        if (this.videoPlayer.continueVideo()) {
+          this.journal.record(verb, null, null, null);
+        }
         break;
-      case "SHOW_PLAYING":
+      case SHOW_PLAYING:
         this.videoPlayer.showPlaying();
         break;
-      case "CREATE_PLAYLIST":
-        try {
-          this.videoPlayer.createPlaylist(command.get(1));
-          this.lastCommand = "DELETE_PLAYLIST";
-          this.lastParameters = new ArrayList<>();
-          this.lastParameters.add(command.get(1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter CREATE_PLAYLIST command followed by a " +
-                  "playlist name.");
+      case CREATE_PLAYLIST:
+        if (this.videoPlayer.createPlaylist(command.word(1))) {
+          this.journal.record(verb, command.word(1), null, null);
         }
         break;
-      case "ADD_TO_PLAYLIST":
-        try {
-          this.videoPlayer.addVideoToPlaylist(command.get(1), command.get(2));
-          this.lastCommand = "REMOVE_FROM_PLAYLIST";
-          this.lastParameters = new ArrayList<>();
-          this.lastParameters.add(command.get(1));
-          this.lastParameters.add(command.get(2));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter ADD_TO_PLAYLIST command followed by a "
-                  + "playlist name and video_id to add.");
+      case ADD_TO_PLAYLIST:
+        if (this.videoPlayer.addVideoToPlaylist(command.word(1), command.word(2))) {
+          this.journal.record(verb, command.word(1), command.word(2), null);
         }
         break;
-      case "PLAY_PLAYLIST":
-        try {
-          this.videoPlayer.playPlaylist(command.get(1));
-          this.lastCommand = "CLOSE_PLAYLIST";
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter PLAY_PLAYLIST command followed by playlist name.");
+      case PLAY_PLAYLIST:
+        String stopped = this.videoPlayer.getPlayingVideoId();
+        if (this.videoPlayer.playPlaylist(command.word(1))) {
+          this.journal.record(verb, command.word(1), stopped, null);
         }
         break;
-      case "NEXT":
-        this.videoPlayer.next();
-        this.lastCommand = "PREVIOUS";
+      case NEXT:
+        if (this.videoPlayer.next()) {
+          this.journal.record(verb, null, null, null);
+        }
         break;
-      case "PREVIOUS":
-        this.videoPlayer.previous();
-        this.lastCommand = "NEXT";
+      case PREVIOUS:
+        if (this.videoPlayer.previous()) {
+          this.journal.record(verb, null, null, null);
+        }
         break;
-      case "SHOW_CURRENT_PLAYLIST":
+      case SHOW_CURRENT_PLAYLIST:
         this.videoPlayer.showCurrentPlaylist();
         break;
-      case "CLOSE_PLAYLIST":
+      case CLOSE_PLAYLIST:
         String name = this.videoPlayer.closePlaylist();
-        this.lastCommand = "PLAY_PLAYLIST";
-        this.lastParameters = new ArrayList<>();
-        this.lastParameters.add(name);
-        break;
-      case "REMOVE_FROM_PLAYLIST":
-        try {
-          this.videoPlayer.removeFromPlaylist(command.get(1), command.get(2));
-          this.lastCommand = "ADD_TO_PLAYLIST";
-          this.lastParameters.add(command.get(1));
-          this.lastParameters.add(command.get(2));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter REMOVE_FROM_PLAYLIST command followed by a "
-                  + "playlist name and video_id to remove.");
+        if (!name.isEmpty()) {
+          this.journal.record(verb, name, null, null);
         }
         break;
-      case "CLEAR_PLAYLIST":
-        try {
-          HashMap<String, List<Video>> map = this.videoPlayer.clearPlaylist(command.get(1));
-          this.lastCommand = "RESTORE_PLAYLIST";
-          this.specialContainer = map;
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter CLEAR_PLAYLIST command followed by a "
-                  + "playlist name.");
+      case REMOVE_FROM_PLAYLIST:
+        if (this.videoPlayer.removeFromPlaylist(command.word(1), command.word(2))) {
+          this.journal.record(verb, command.word(1), command.word(2), null);
         }
         break;
-      case "DELETE_PLAYLIST":
-        try {
-          String playlistName = this.videoPlayer.deletePlaylist(command.get(1));
-          this.lastCommand = "CREATE_PLAYLIST";
-          this.lastParameters = new ArrayList<>();
-          this.lastParameters.add(playlistName);
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter DELETE_PLAYLIST command followed by a " +
-                  "playlist name.");
+      case CLEAR_PLAYLIST:
+        VideoPlaylist cleared = this.videoPlayer.clearPlaylist(command.word(1));
+        if (cleared != null) {
+          this.journal.record(verb, command.word(1), null, cleared);
         }
         break;
-      case "SHOW_PLAYLIST":
-        try {
-          this.videoPlayer.showPlaylist(command.get(1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter SHOW_PLAYLIST command followed by a " +
-              "playlist name.");
+      case DELETE_PLAYLIST:
+        VideoPlaylist deleted = this.videoPlayer.getPlaylist(command.word(1));
+        String playlistName = this.videoPlayer.deletePlaylist(command.word(1));
+        if (!playlistName.isEmpty()) {
+          this.journal.record(verb, playlistName, null, deleted);
         }
         break;
-      case "SHOW_ALL_PLAYLISTS":
+      case SHOW_PLAYLIST:
+        this.videoPlayer.showPlaylist(command.word(1));
+        break;
+      case SHOW_ALL_PLAYLISTS:
         this.videoPlayer.showAllPlaylists();
         break;
-      case "SEARCH_VIDEOS":
-        try {
-          this.videoPlayer.searchVideos(command.get(1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter SEARCH_VIDEOS command followed by a " +
-              "search term.");
-        }
+      case SEARCH_VIDEOS:
+        this.videoPlayer.searchVideos(command.word(1));
         break;
-      case "SEARCH_VIDEOS_WITH_TAG":
-        try {
-          this.videoPlayer.searchVideosWithTag(command.get(1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
-              "Please enter SEARCH_VIDEOS_WITH_TAG command followed by a " +
-                  "video tag.");
-        }
+      case SEARCH_VIDEOS_WITH_TAG:
+        this.videoPlayer.searchVideosWithTag(command.word(1));
         break;
-      case "FLAG_VIDEO":
-        try {
-          this.videoPlayer.flagVideo(command.get(1), command.get(2));
-          this.lastCommand = "ALLOW_VIDEO";
-          this.lastParameters = new ArrayList<>();
-          this.lastParameters.add(command.get(1));
-          this.lastParameters.add(command.get(2));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          try {
-            this.videoPlayer.flagVideo(command.get(1));
-            this.lastCommand = "ALLOW_VIDEO";
-            this.lastParameters = new ArrayList<>();
-            this.lastParameters.add(command.get(1));
-          } catch (ArrayIndexOutOfBoundsException f) {
-            System.out.println("Please enter FLAG_VIDEO command followed by a" +
-                "video_id and an optional flag reason.");
-          }
+      case FLAG_VIDEO:
+        String flagReason = arguments == 2 ? command.word(2) : null;
+        if (flagReason != null
+            ? this.videoPlayer.flagVideo(command.word(1), flagReason)
+            : this.videoPlayer.flagVideo(command.word(1))) {
+          this.journal.record(verb, command.word(1), flagReason, null);
         }
         break;
-      case "ALLOW_VIDEO":
-        try {
-          String reason = this.videoPlayer.allowVideo(command.get(1));
-          this.lastCommand = "FLAG_VIDEO";
-          this.lastParameters = new ArrayList<>();
-          this.lastParameters.add(command.get(1));
-          this.lastParameters.add(reason);
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter ALLOW_VIDEO command followed by a " +
-              "video_id.");
+      case ALLOW_VIDEO:
+        String reason = this.videoPlayer.allowVideo(command.word(1));
+        if (!reason.isEmpty()) {
+          this.journal.record(verb, command.word(1), reason, null);
         }
         break;
-      case "RATE_VIDEO":
-        try{
-          this.videoPlayer.rateVideo(command.get(1), Integer.parseInt(command.get(2)));
-        } catch (ArrayIndexOutOfBoundsException e){
-          System.out.println("Please enter RATE_VIDEO followed by a video_id and an integer rating.");
+      case RATE_VIDEO:
+        if (command.isNumber(2)) {
+          this.videoPlayer.rateVideo(command.word(1), command.number(2));
+        } else {
+          out.println(verb.usage);
+          return false;
         }
         break;
-      case "HELP":
+      case HELP:
         this.getHelp();
         break;
-      case "UNDO":
+      case UNDO:
         this.undo();
         break;
-      default:
-        System.out.println(
-            "Please enter a valid command, type HELP for a list of "
-            + "available commands.");
+      case REDO:
+        this.redo();
         break;
     }
+    return true;
   }
 
   /**
@@ -240,13 +237,15 @@ class CommandParser {
         "Available commands:\n"
             + "Note: Names(video names and playlist names) are not case-sensitive. But for convenience, most videos are accessed using ID. \n"
             + "    NUMBER_OF_VIDEOS - Shows how many videos are in the library.\n"
-            + "    SHOW_ALL_VIDEOS - Lists all videos from the library in a format of NAME (ID) [TAGS] RATE.\n"
+            + "    SHOW_ALL_VIDEOS [page] [size] - Lists all videos from the library in a format of NAME (ID) [TAGS] RATE,\n"
+            + "        or only one page of them, " + DEFAULT_PAGE_SIZE + " videos per page unless a size is given.\n"
             + "    PLAY <video_id> - Plays specified video, there may be a warning message when opening the browser, just ignore.\n"
-            + "    PLAY_RANDOM - Plays a random video from the library.\n"
+            + "    PLAY_RANDOM [RATED] - Plays a random video from the library, likelier the better it is rated if RATED is given.\n"
             + "    STOP - Stop the current video. Unfortunately, java cannot really close your video on the browser.\n"
             + "    PAUSE - Pause the current video. Unfortunately, java cannot really pause your video on the browser.\n"
             + "    CONTINUE - Resume the current paused video.\n"
-            + "    UNDO - undo last command, may not work for every command. \n"
+            + "    UNDO - Undo the last command that changed something, up to " + UndoJournal.DEFAULT_CAPACITY + " commands back.\n"
+            + "    REDO - Redo the last command undone, until another command changes something.\n"
             + "    HELP - Displays help.\n"
             + "    EXIT - Terminates the program execution.\n"
             + "    SHOW_PLAYING - Displays the title, id and paused status of the video that is currently playing (or paused).\n"
@@ -271,89 +270,159 @@ class CommandParser {
             + "    ALLOW_VIDEO <video_id> - Removes a flag from a video.\n"
             + "    ---------------Other operations--------------------\n"
             + "    RATE_VIDEO <video_id> <score> - Rate a video, with an integer between 1-5. \n";
-    System.out.println(helpText);
+    out.println(helpText);
   }
 
-  /** UNDO last command **/
+  /** UNDO the last command that changed something **/
   private void undo() {
-    String errorMessage = "Cannot undo command";
-    System.out.println("Undoing...");
-    switch (this.lastCommand){
-      case "PLAY" :
-        try {
-          this.videoPlayer.playVideo(lastParameters.get(0));
-        } catch (Exception e) {
-          System.out.println(errorMessage);
+    int slot = this.journal.undo();
+    if (slot < 0) {
+      out.println("Cannot undo command: nothing to undo");
+      return;
+    }
+    Verb verb = this.journal.verb(slot);
+    String first = this.journal.first(slot);
+    String second = this.journal.second(slot);
+    out.println("Undoing " + verb);
+    switch (verb) {
+      case PLAY:
+      case PLAY_RANDOM:
+        //back to the video playing before, if there was one
+        if (second != null) {
+          this.videoPlayer.playVideo(second);
+        } else {
+          this.videoPlayer.stopVideo();
         }
         break;
-      case "STOP" :
-        this.videoPlayer.stopVideo();
+      case STOP:
+        this.videoPlayer.playVideo(first);
         break;
-      case "CONTINUE" :
+      case PAUSE:
         this.videoPlayer.continueVideo();
         break;
-      case "PAUSE" :
+      case CONTINUE:
         this.videoPlayer.pauseVideo();
         break;
-      case "DELETE_PLAYLIST" :
-        this.videoPlayer.deletePlaylist(this.lastParameters.get(0));
+      case CREATE_PLAYLIST:
+        this.videoPlayer.deletePlaylist(first);
         break;
-      case "CREATE_PLAYLIST":
-        this.videoPlayer.createPlaylist(this.lastParameters.get(0));
-      case "REMOVE_FROM_PLAYLIST":
-        try {
-          this.videoPlayer.removeFromPlaylist(this.lastParameters.get(1), this.lastParameters.get(2));
-        } catch (Exception e) {
-          System.out.println(errorMessage);
-        }
+      case ADD_TO_PLAYLIST:
+        this.videoPlayer.removeFromPlaylist(first, second);
+        break;
+      case REMOVE_FROM_PLAYLIST:
+        //the video goes back at the end of the playlist
+        this.videoPlayer.addVideoToPlaylist(first, second);
         break;
-      case "ADD_TO_PLAYLIST":
-        try {
-          this.videoPlayer.addVideoToPlaylist(this.lastParameters.get(1), this.lastParameters.get(2));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(errorMessage);
+      case PLAY_PLAYLIST:
+        this.videoPlayer.closePlaylist();
+        if (second != null) {
+          this.videoPlayer.playVideo(second);
+        } else {
+          this.videoPlayer.stopVideo();
         }
         break;
-      case "PLAY_PLAYLIST":
-        try {
-          this.videoPlayer.playPlaylist(this.lastParameters.get(0));
-        } catch (Exception e){
-          System.out.println(errorMessage);
+      case NEXT:
+        this.videoPlayer.previous();
+        break;
+      case PREVIOUS:
+        this.videoPlayer.next();
+        break;
+      case CLOSE_PLAYLIST:
+        this.videoPlayer.playPlaylist(first);
+        break;
+      case CLEAR_PLAYLIST:
+      case DELETE_PLAYLIST:
+        VideoPlaylist saved = this.journal.saved(slot);
+        if (saved == null) {
+          //a redo of it found the playlist gone, so there is nothing to put back
+          out.println("Cannot undo command: playlist " + first + " has changed since");
+        } else if (verb == Verb.CLEAR_PLAYLIST
+            ? this.videoPlayer.restoreVideos(first, saved) != null
+            : this.videoPlayer.restorePlaylist(first, saved)) {
+          //the same videos go back as they were, a redo takes them out again
+          this.journal.save(slot, null);
         }
         break;
-      case "CLOSE_PLAYLIST":
-        this.videoPlayer.closePlaylist();
+      case FLAG_VIDEO:
+        this.videoPlayer.allowVideo(first);
         break;
-      case "NEXT":
+      case ALLOW_VIDEO:
+        this.videoPlayer.flagVideo(first, second);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** REDO the last command undone **/
+  private void redo() {
+    int slot = this.journal.redo();
+    if (slot < 0) {
+      out.println("Cannot redo command: nothing to redo");
+      return;
+    }
+    Verb verb = this.journal.verb(slot);
+    String first = this.journal.first(slot);
+    String second = this.journal.second(slot);
+    out.println("Redoing " + verb);
+    switch (verb) {
+      case PLAY:
+      case PLAY_RANDOM:
+        this.videoPlayer.playVideo(first);
+        break;
+      case STOP:
+        this.videoPlayer.stopVideo();
+        break;
+      case PAUSE:
+        this.videoPlayer.pauseVideo();
+        break;
+      case CONTINUE:
+        this.videoPlayer.continueVideo();
+        break;
+      case CREATE_PLAYLIST:
+        this.videoPlayer.createPlaylist(first);
+        break;
+      case ADD_TO_PLAYLIST:
+        this.videoPlayer.addVideoToPlaylist(first, second);
+        break;
+      case REMOVE_FROM_PLAYLIST:
+        this.videoPlayer.removeFromPlaylist(first, second);
+        break;
+      case PLAY_PLAYLIST:
+        this.videoPlayer.playPlaylist(first);
+        break;
+      case NEXT:
         this.videoPlayer.next();
         break;
-      case "PREVIOUS":
+      case PREVIOUS:
         this.videoPlayer.previous();
         break;
-      case "RESTORE_PLAYLIST":
-        if (!this.specialContainer.keySet().isEmpty()){
-          String name = this.specialContainer.keySet().iterator().next();
-          for (Video video: this.specialContainer.get(name)){
-            this.videoPlayer.addVideoToPlaylist(name, video.getVideoId());
-          }
-        }else {
-          System.out.println(errorMessage);
+      case CLOSE_PLAYLIST:
+        this.videoPlayer.closePlaylist();
+        break;
+      case CLEAR_PLAYLIST:
+        VideoPlaylist cleared = this.videoPlayer.clearPlaylist(first);
+        if (cleared != null) {
+          this.journal.save(slot, cleared);
         }
         break;
-      case "ALLOW_VIDEO":
-        try {
-          this.videoPlayer.allowVideo(this.lastParameters.get(0));
-        } catch (Exception e) {
-          System.out.println(errorMessage);
+      case DELETE_PLAYLIST:
+        VideoPlaylist deleted = this.videoPlayer.getPlaylist(first);
+        if (!this.videoPlayer.deletePlaylist(first).isEmpty()) {
+          this.journal.save(slot, deleted);
         }
-      case "FLAG_VIDEO":
-        try {
-          this.videoPlayer.flagVideo(this.lastParameters.get(0), this.lastParameters.get(1));
-        } catch (Exception e) {
-          System.out.println(errorMessage);
+        break;
+      case FLAG_VIDEO:
+        if (second != null) {
+          this.videoPlayer.flagVideo(first, second);
+        } else {
+          this.videoPlayer.flagVideo(first);
         }
-      default :
-        System.out.println(errorMessage + ": nothing to undo or command undo still developing.");
+        break;
+      case ALLOW_VIDEO:
+        this.videoPlayer.allowVideo(first);
+        break;
+      default:
         break;
     }
   }
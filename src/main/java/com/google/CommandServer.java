@@ -0,0 +1,259 @@
+package com.google;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serves the console commands over local TCP or Unix domain sockets, one {@link PlayerEngine}
+ * for all connections and a session with its own {@link CommandParser} per connection. Each
+ * connection is served by its own thread, a virtual thread when the runtime has them.
+ *
+ * <p>The protocol is the console one, lines of UTF-8 text. The server writes {@link #PROMPT}
+ * at the start of a line whenever it waits for a command and {@link #QUESTION} when a command
+ * asks the user something, e.g. whether to play a search result, and waits for the answer.
+ * An optional first line {@code USER <name>} picks whose playlists the session uses, otherwise
+ * every connection is a user of its own. {@code EXIT} ends the connection.
+ */
+class CommandServer implements Runnable, Closeable {
+
+  static final String PROMPT = "YT> ";
+  static final String QUESTION = "?> ";
+  static final int DEFAULT_PORT = 7070;
+  private static final int BACKLOG = 4096;
+  //command lines are short, a small buffer keeps ten thousands of idle connections cheap
+  private static final int LINE_BUFFER = 1024;
+
+  private final PlayerEngine engine;
+  private final ServerSocketChannel server;
+  private final ThreadFactory threads = connectionThreads();
+  private final AtomicInteger connections = new AtomicInteger();
+
+  CommandServer(PlayerEngine engine, ServerSocketChannel server) {
+    this.engine = engine;
+    this.server = server;
+  }
+
+  /**
+   * Listens on an address given as {@code port}, {@code host:port} or {@code unix:<path>}. A
+   * bare port listens on the loopback interface only.
+   */
+  static CommandServer open(PlayerEngine engine, String address) throws IOException {
+    ServerSocketChannel server;
+    if (address.startsWith("unix:")) {
+      Path path = Paths.get(address.substring("unix:".length()));
+      Files.deleteIfExists(path);
+      server = unixChannel(ServerSocketChannel.class);
+      server.bind(unixAddress(path), BACKLOG);
+    } else {
+      server = ServerSocketChannel.open();
+      server.bind(tcpAddress(address), BACKLOG);
+    }
+    return new CommandServer(engine, server);
+  }
+
+  /** Connects to a server listening on an address in the form taken by {@link #open}. */
+  static SocketChannel connect(String address) throws IOException {
+    if (address.startsWith("unix:")) {
+      SocketChannel channel = unixChannel(SocketChannel.class);
+      channel.connect(unixAddress(Paths.get(address.substring("unix:".length()))));
+      return channel;
+    }
+    return SocketChannel.open(tcpAddress(address));
+  }
+
+  private static InetSocketAddress tcpAddress(String address) {
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+    }
+    return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+  }
+
+  //Unix domain sockets arrived in Java 16, reached by reflection so the project builds for 11
+  private static <T> T unixChannel(Class<T> type) throws IOException {
+    ProtocolFamily unix;
+    try {
+      unix = StandardProtocolFamily.valueOf("UNIX");
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unix domain sockets need Java 16 or newer");
+    }
+    return type.cast(invoke(type, "open", new Class<?>[] {ProtocolFamily.class}, unix));
+  }
+
+  private static SocketAddress unixAddress(Path path) throws IOException {
+    try {
+      Class<?> type = Class.forName("java.net.UnixDomainSocketAddress");
+      return (SocketAddress) invoke(type, "of", new Class<?>[] {Path.class}, path);
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unix domain sockets need Java 16 or newer");
+    }
+  }
+
+  private static Object invoke(Class<?> type, String name, Class<?>[] parameters, Object argument)
+      throws IOException {
+    try {
+      return type.getMethod(name, parameters).invoke(null, argument);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Threads serving connections: virtual threads when the runtime has them (Java 21), daemon
+   * threads with small stacks otherwise.
+   */
+  static ThreadFactory connectionThreads() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> type = Class.forName("java.lang.Thread$Builder");
+      builder = type.getMethod("name", String.class, long.class).invoke(builder, "connection-", 1L);
+      return (ThreadFactory) type.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger count = new AtomicInteger();
+      return task -> {
+        Thread thread = new Thread(null, task, "connection-" + count.incrementAndGet(), 256 * 1024);
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+
+  /** Address the server listens on. */
+  SocketAddress getAddress() throws IOException {
+    return server.getLocalAddress();
+  }
+
+  /** Accepts connections on a new thread and returns. */
+  CommandServer start() {
+    Thread acceptor = new Thread(this, "command-server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return this;
+  }
+
+  /** Accepts connections until the server is closed. */
+  @Override
+  public void run() {
+    while (server.isOpen()) {
+      try {
+        SocketChannel channel = server.accept();
+        int number = connections.incrementAndGet();
+        threads.newThread(() -> this.serve(channel, number)).start();
+      } catch (AsynchronousCloseException e) {
+        return;
+      } catch (IOException e) {
+        System.err.println("Couldn't accept connection: " + e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+  }
+
+  private void serve(SocketChannel channel, int number) {
+    try (channel;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8), LINE_BUFFER)) {
+      BufferedSink out = new BufferedSink(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+      prompt(out, PROMPT);
+      String line = in.readLine();
+      String user = "connection-" + number;
+      if (line != null && line.toUpperCase(Locale.ROOT).startsWith("USER ")) {
+        user = line.substring("USER ".length()).trim();
+        if (!MutationLog.fits(user)) {
+          out.println("Cannot open session: User name is too long");
+          out.flush();
+          return;
+        }
+        prompt(out, PROMPT);
+        line = in.readLine();
+      }
+      CommandParser parser = new CommandParser(engine.openSession(user, out,
+          PromptPolicy.reading(out, answers(in, out))));
+      while (line != null) {
+        if (line.equalsIgnoreCase("exit")) {
+          out.println("YouTube has now terminated its execution. Thank you and goodbye!");
+          out.flush();
+          break;
+        }
+        parser.executeLine(line);
+        prompt(out, PROMPT);
+        line = in.readLine();
+      }
+    } catch (IOException | UncheckedIOException | NoSuchElementException e) {
+      //the client went away, possibly while a command waited for an answer
+    } catch (RuntimeException e) {
+      System.err.println("Connection " + number + " failed: " + e);
+    }
+  }
+
+  /** Answers to questions of the session: the first word of the next non-blank line. */
+  private static Supplier<String> answers(BufferedReader in, OutputSink out) {
+    return () -> {
+      prompt(out, QUESTION);
+      try {
+        String line;
+        do {
+          line = in.readLine();
+          if (line == null) {
+            throw new NoSuchElementException();
+          }
+          line = line.strip();
+        } while (line.isEmpty());
+        return line.split("\\s+")[0];
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  private static void prompt(OutputSink out, String prompt) {
+    out.print(prompt);
+    out.flush();
+  }
+
+  /**
+   * Runs a server, arguments are the address in the form taken by {@link #open}, port 7070 by
+   * default, and optionally the catalog file to serve instead of the bundled one.
+   */
+  public static void main(String[] args) throws IOException {
+    String address = args.length > 0 ? args[0] : Integer.toString(DEFAULT_PORT);
+    VideoLibrary library = args.length > 1
+        ? new VideoLibrary(Paths.get(args[1]), VideoLibrary.Loader.fromProperty())
+        : new VideoLibrary();
+    try (PlayerEngine engine = PlayerEngine.fromProperties(library);
+        CommandServer server = open(engine, address)) {
+      System.out.println("Serving " + library.size() + " videos on " + server.getAddress());
+      server.run();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.google;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
+/** A video holding its own fields, as every loader but the columns builds them. */
+final class FieldVideo extends Video {
+
+  private static final VarHandle RATINGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final String title;
+  private final String videoId;
+  //numbers of the tags in the shared TagVocabulary, in catalog order
+  private final int[] tags;
+  //volatile, a flag set in one session is seen by all others
+  private volatile boolean flag;
+  //number of ratings given per score, index 0 counts the 1 star ratings
+  private final long[] ratings;
+  private volatile String flagReason;
+  private final String URL;
+
+  FieldVideo(String title, String videoId, List<String> tags, String url) {
+    this.title = title;
+    this.videoId = videoId;
+    this.tags = TagVocabulary.SHARED.ids(tags);
+    this.flag = false;
+    this.flagReason = "Not supplied";
+    this.URL = url;
+    this.ratings = new long[MAX_SCORE];
+  }
+
+  @Override
+  public void setFlag(boolean flag) {
+    this.flag = flag;
+  }
+
+  @Override
+  public void setFlagReason(String flagReason) {
+    this.flagReason = flagReason;
+  }
+
+  @Override
+  public boolean isFlag() {
+    return flag;
+  }
+
+  @Override
+  public String getFlagReason() {
+    return flagReason;
+  }
+
+  @Override
+  public String getURL() {
+    return URL;
+  }
+
+  @Override
+  String getTitle() { return title;}
+
+  @Override
+  String getVideoId() { return videoId; }
+
+  @Override
+  List<String> getTags() {
+    return TagVocabulary.SHARED.tags(tags);
+  }
+
+  @Override
+  void addRatings(int score, long count) {
+    RATINGS.getAndAdd(this.ratings, score - 1, count);
+  }
+
+  @Override
+  long ratingCount(int score) {
+    return (long) RATINGS.getVolatile(this.ratings, score - 1);
+  }
+}
@@ -0,0 +1,28 @@
+package com.google;
+
+/** Keeps everything printed in memory, e.g. to check what a session printed in a test. */
+class MemorySink implements OutputSink {
+
+  private final StringBuilder text = new StringBuilder();
+
+  @Override
+  public OutputSink print(CharSequence text) {
+    this.text.append(text);
+    return this;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  /** Forgets everything printed so far. */
+  void clear() {
+    text.setLength(0);
+  }
+
+  /** Everything printed so far. */
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+}
@@ -0,0 +1,828 @@
+package com.google;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of every change to playlists, flags and ratings, replayed into a
+ * {@link PlayerEngine} when it starts, so they outlive the process.
+ *
+ * <p>The log is a run of segment files named by the position of their first record,
+ * {@code <position in hex>.wal}. Positions count the bytes of records only and run on from one
+ * segment to the next, so a position names a place in the whole log. Layout, all numbers big
+ * endian:
+ * <pre>
+ *   header    magic, version, position of the segment
+ *   records   length and CRC32C of the body, then the body: a type byte and its fields;
+ *             strings are an unsigned short length and UTF-8 bytes
+ * </pre>
+ * A record cut short or damaged at the end of the last segment is what a crash leaves behind,
+ * replay stops there and the log goes on from the last whole record.
+ *
+ * <p>Sessions append under the lock that orders the change, which only copies the record into
+ * a buffer in memory. A writer thread writes whatever has collected at once and syncs it to
+ * disk as the {@link Sync} policy says, so concurrent sessions share one write and one sync.
+ */
+final class MutationLog implements Closeable {
+
+  static final int MAGIC = 0x5954574C; //"YTWL"
+  static final int VERSION = 1;
+
+  /** Size after which the writer starts a new segment. */
+  static final int SEGMENT_BYTES = 64 << 20;
+  /** Time between syncs with {@link Sync#INTERVAL}. */
+  static final long SYNC_INTERVAL_MILLIS = 100;
+
+  /** Most UTF-8 bytes a logged string may take, its length is an unsigned short. */
+  static final int MAX_STRING_BYTES = 0xFFFF;
+
+  /** The log of an engine that keeps nothing, appending to it does nothing. */
+  static final MutationLog DISABLED = new MutationLog();
+
+  private static final int HEADER_BYTES = 16;
+  //length and crc in front of each record body
+  private static final int FRAME_BYTES = 8;
+  //appending waits for the writer once this much is waiting to be written
+  private static final int MAX_PENDING = 16 << 20;
+  private static final String SUFFIX = ".wal";
+
+  private static final byte CREATE_PLAYLIST = 1;
+  private static final byte DELETE_PLAYLIST = 2;
+  private static final byte ADD_VIDEO = 3;
+  private static final byte REMOVE_VIDEO = 4;
+  private static final byte CLEAR_PLAYLIST = 5;
+  private static final byte SET_PLAYLIST = 6;
+  private static final byte FLAG_VIDEO = 7;
+  private static final byte ALLOW_VIDEO = 8;
+  private static final byte RATINGS = 9;
+
+  /** When appended records are forced to disk. */
+  enum Sync {
+    /**
+     * Never waits for the disk: records reach the operating system within moments of the
+     * command, and are synced when a segment is full or the log closes. Survives the process
+     * dying, a crash of the machine may lose what was not synced yet.
+     */
+    NONE,
+    /** Like NONE, and the writer syncs at most {@link #SYNC_INTERVAL_MILLIS} after a write. */
+    INTERVAL,
+    /**
+     * Commands wait until their records are synced. Commands committing at the same time share
+     * a sync, and a batch can commit many commands at once, see {@link CommandParser#commitEvery}.
+     */
+    COMMIT;
+
+    /** Policy chosen by the {@code youtube.log.sync} system property, INTERVAL by default. */
+    static Sync fromProperty() {
+      String name = System.getProperty("youtube.log.sync", INTERVAL.name());
+      return Sync.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * Receives the records of a log in the order they were appended. Records may name playlists
+   * and videos that no longer exist, e.g. a video removed from the catalog, those are skipped.
+   */
+  interface Visitor {
+    void createPlaylist(String user, String name);
+
+    void deletePlaylist(String user, String name);
+
+    void addVideo(String user, String name, String videoId);
+
+    void removeVideo(String user, String name, String videoId);
+
+    void clearPlaylist(String user, String name);
+
+    /** The playlist holds exactly these videos now, it is created if it does not exist. */
+    void setPlaylist(String user, String name, List<String> videoIds);
+
+    /** A video was flagged, the reason is null when none was given. */
+    void flagVideo(String videoId, String reason);
+
+    void allowVideo(String videoId);
+
+    /** The video got {@code count} more ratings of {@code score}. */
+    void rateVideo(String videoId, int score, long count);
+  }
+
+  private final Path directory;
+  private final Sync sync;
+  private final int segmentBytes;
+  private final CRC32C crc = new CRC32C();
+  private final Thread writer;
+  //segment being appended to, only touched by the writer once the log is open; its size
+  //counts the header
+  private FileChannel channel;
+  private long segmentStart;
+  private long segmentSize;
+  //records waiting for the writer, swapped with spare when it takes them
+  private ByteBuffer pending = ByteBuffer.allocate(64 << 10);
+  private ByteBuffer spare = ByteBuffer.allocate(64 << 10);
+  //positions after the last record appended, handed to the operating system and synced
+  private long appended;
+  private long written;
+  private long synced;
+  private long lastSyncNanos;
+  private boolean closing;
+  private boolean forceRequested;
+  private IOException failure;
+
+  private MutationLog() {
+    this.directory = null;
+    this.sync = Sync.NONE;
+    this.segmentBytes = SEGMENT_BYTES;
+    this.writer = null;
+  }
+
+  private MutationLog(Path directory, Sync sync, int segmentBytes, FileChannel channel,
+      long segmentStart, long segmentSize) {
+    this.directory = directory;
+    this.sync = sync;
+    this.segmentBytes = segmentBytes;
+    this.channel = channel;
+    this.segmentStart = segmentStart;
+    this.segmentSize = segmentSize;
+    this.appended = segmentStart + segmentSize - HEADER_BYTES;
+    this.written = appended;
+    this.synced = appended;
+    this.lastSyncNanos = System.nanoTime();
+    this.writer = new Thread(this::write, "mutation-log-writer");
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Opens the log in a directory, created if missing, and replays every record in it into
+   * {@code visitor} before anything can be appended.
+   */
+  static MutationLog open(Path directory, Sync sync, Visitor visitor) throws IOException {
+    return open(directory, sync, 0, SEGMENT_BYTES, visitor);
+  }
+
+  /**
+   * Opens the log and replays the records from a position on, e.g. the position up to which a
+   * {@link Checkpoint} already holds the changes.
+   */
+  static MutationLog open(Path directory, Sync sync, long from, int segmentBytes, Visitor visitor)
+      throws IOException {
+    Files.createDirectories(directory);
+    List<Path> segments = segments(directory);
+    long start = from;
+    long size = 0;
+    int last = segments.size() - 1;
+    if (last >= 0 && Files.size(segments.get(last)) < HEADER_BYTES) {
+      //a crash right after the segment was created, before its header was written
+      start = Math.max(from, position(segments.get(last)));
+      Files.delete(segments.remove(last--));
+    }
+    boolean replayed = false;
+    for (int i = 0; i <= last; i++) {
+      long end = i < last ? position(segments.get(i + 1)) : Long.MAX_VALUE;
+      if (end <= from) {
+        //everything in it came before the position
+        continue;
+      }
+      start = position(segments.get(i));
+      if (!replayed && start > from) {
+        throw new IOException("Mutation log starts at " + start + ", after position " + from);
+      }
+      replayed = true;
+      size = replay(segments.get(i), start, from, Long.MAX_VALUE, visitor, i == last);
+    }
+    FileChannel channel;
+    if (last < 0) {
+      channel = create(directory, start);
+      size = HEADER_BYTES;
+    } else {
+      channel = FileChannel.open(segments.get(last), StandardOpenOption.WRITE);
+      //drops what is left of a record cut short by a crash
+      channel.truncate(size);
+      channel.position(size);
+    }
+    MutationLog log = new MutationLog(directory, sync, segmentBytes, channel, start, size);
+    log.writer.start();
+    return log;
+  }
+
+  /**
+   * Replays the records between two positions of the log in a directory, e.g. while the log is
+   * open. Both positions must be where records start or end, like the ones {@link #force}
+   * returns.
+   */
+  static void replay(Path directory, long from, long to, Visitor visitor) throws IOException {
+    List<Path> segments = segments(directory);
+    long reached = from;
+    for (int i = 0; i < segments.size() && reached < to; i++) {
+      long start = position(segments.get(i));
+      long end = i < segments.size() - 1 ? position(segments.get(i + 1)) : Long.MAX_VALUE;
+      if (end <= from) {
+        continue;
+      }
+      if (start > reached) {
+        throw new IOException("Mutation log has no records from " + reached + " to " + start);
+      }
+      reached = start + replay(segments.get(i), start, reached, to, visitor, false) - HEADER_BYTES;
+    }
+    if (reached < to) {
+      throw new IOException("Mutation log ends at " + reached + ", before position " + to);
+    }
+  }
+
+  /**
+   * Deletes the segments holding only records before the position, which a checkpoint holds
+   * now. The segment being appended to is never one of them.
+   */
+  static void deleteBefore(Path directory, long position) throws IOException {
+    List<Path> segments = segments(directory);
+    for (int i = 0; i < segments.size() - 1; i++) {
+      if (position(segments.get(i + 1)) <= position) {
+        Files.delete(segments.get(i));
+      }
+    }
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  Sync getSync() {
+    return sync;
+  }
+
+  /** Position after the last record appended, 0 for a disabled log. */
+  synchronized long getPosition() {
+    return appended;
+  }
+
+  long createPlaylist(String user, String name) {
+    return this.append(CREATE_PLAYLIST, user, name, null);
+  }
+
+  long deletePlaylist(String user, String name) {
+    return this.append(DELETE_PLAYLIST, user, name, null);
+  }
+
+  long addVideo(String user, String name, String videoId) {
+    return this.append(ADD_VIDEO, user, name, videoId);
+  }
+
+  long removeVideo(String user, String name, String videoId) {
+    return this.append(REMOVE_VIDEO, user, name, videoId);
+  }
+
+  long clearPlaylist(String user, String name) {
+    return this.append(CLEAR_PLAYLIST, user, name, null);
+  }
+
+  /** Records that the playlist holds exactly the given videos, e.g. when an undo put them back. */
+  long setPlaylist(String user, String name, VideoPlaylist videos) {
+    if (writer == null) {
+      return 0;
+    }
+    synchronized (videos) {
+      synchronized (this) {
+        int start = this.begin(SET_PLAYLIST);
+        try {
+          this.putString(user);
+          this.putString(name);
+          this.reserve(4);
+          pending.putInt(videos.size());
+          for (Video video : videos) {
+            this.putString(video.getVideoId());
+          }
+        } catch (RuntimeException e) {
+          this.abandon(start);
+          throw e;
+        }
+        return this.end(start);
+      }
+    }
+  }
+
+  /** Records a flag, the reason is null when none was given. */
+  long flagVideo(String videoId, String reason) {
+    //no word the user types is empty, so an empty reason stands for none
+    return this.append(FLAG_VIDEO, videoId, reason == null ? "" : reason, null);
+  }
+
+  long allowVideo(String videoId) {
+    return this.append(ALLOW_VIDEO, videoId, null, null);
+  }
+
+  long rateVideo(String videoId, int score) {
+    if (writer == null) {
+      return 0;
+    }
+    synchronized (this) {
+      int start = this.begin(RATINGS);
+      try {
+        this.reserve(4);
+        pending.putInt(1);
+        this.putRating(videoId, score, 1);
+      } catch (RuntimeException e) {
+        this.abandon(start);
+        throw e;
+      }
+      return this.end(start);
+    }
+  }
+
+  /**
+   * Records ratings in bulk as one record, {@code counts[slot * MAX_SCORE + score - 1]} holds
+   * the number of ratings with each score for the video in each slot.
+   */
+  long rateVideos(Video[] videos, long[] counts, int size) {
+    if (writer == null) {
+      return 0;
+    }
+    int entries = 0;
+    for (int i = 0; i < size * Video.MAX_SCORE; i++) {
+      if (counts[i] != 0) {
+        entries++;
+      }
+    }
+    synchronized (this) {
+      int start = this.begin(RATINGS);
+      try {
+        this.reserve(4);
+        pending.putInt(entries);
+        for (int slot = 0; slot < size; slot++) {
+          for (int score = 1; score <= Video.MAX_SCORE; score++) {
+            long count = counts[slot * Video.MAX_SCORE + score - 1];
+            if (count != 0) {
+              this.putRating(videos[slot].getVideoId(), score, count);
+            }
+          }
+        }
+      } catch (RuntimeException e) {
+        this.abandon(start);
+        throw e;
+      }
+      return this.end(start);
+    }
+  }
+
+  /**
+   * Waits until everything up to the position is as durable as the policy promises: synced for
+   * {@link Sync#COMMIT}, nothing to wait for otherwise.
+   */
+  void commit(long position) {
+    if (sync != Sync.COMMIT || writer == null) {
+      return;
+    }
+    synchronized (this) {
+      try {
+        while (synced < position && failure == null) {
+          this.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for the log"));
+      }
+      this.checkFailure();
+    }
+  }
+
+  /** Writes and syncs everything appended so far, whatever the policy, and returns its position. */
+  long force() {
+    if (writer == null) {
+      return 0;
+    }
+    synchronized (this) {
+      long position = appended;
+      forceRequested = true;
+      this.notifyAll();
+      try {
+        while (synced < position && failure == null) {
+          this.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for the log"));
+      }
+      this.checkFailure();
+      return position;
+    }
+  }
+
+  /** Writes and syncs everything appended, then stops the writer. */
+  @Override
+  public void close() throws IOException {
+    if (writer == null) {
+      return;
+    }
+    synchronized (this) {
+      if (closing) {
+        return;
+      }
+      closing = true;
+      this.notifyAll();
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted closing the log");
+    }
+    channel.close();
+    synchronized (this) {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private long append(byte type, String first, String second, String third) {
+    if (writer == null) {
+      return 0;
+    }
+    synchronized (this) {
+      int start = this.begin(type);
+      try {
+        this.putString(first);
+        if (second != null) {
+          this.putString(second);
+        }
+        if (third != null) {
+          this.putString(third);
+        }
+      } catch (RuntimeException e) {
+        this.abandon(start);
+        throw e;
+      }
+      return this.end(start);
+    }
+  }
+
+  /** Starts a record in the pending buffer and returns where it starts. Holds the lock. */
+  private int begin(byte type) {
+    this.checkFailure();
+    if (closing) {
+      throw new IllegalStateException("Mutation log is closed");
+    }
+    try {
+      while (pending.position() >= MAX_PENDING) {
+        //the disk cannot keep up, wait for the writer to take the buffer
+        this.wait();
+        this.checkFailure();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for the log"));
+    }
+    this.reserve(FRAME_BYTES + 1);
+    int start = pending.position();
+    pending.position(start + FRAME_BYTES);
+    pending.put(type);
+    return start;
+  }
+
+  /** Fills in the frame of the record begun at {@code start} and hands it to the writer. */
+  private long end(int start) {
+    int length = pending.position() - start - FRAME_BYTES;
+    crc.reset();
+    crc.update(pending.array(), start + FRAME_BYTES, length);
+    pending.putInt(start, length);
+    pending.putInt(start + 4, (int) crc.getValue());
+    appended += FRAME_BYTES + length;
+    if (pending.position() == FRAME_BYTES + length) {
+      //the writer may be waiting for work
+      this.notifyAll();
+    }
+    return appended;
+  }
+
+  /** Drops the record begun at {@code start}, so the writer never sees a part of it. */
+  private void abandon(int start) {
+    pending.position(start);
+  }
+
+  private void putRating(String videoId, int score, long count) {
+    this.putString(videoId);
+    this.reserve(9);
+    pending.put((byte) score);
+    pending.putLong(count);
+  }
+
+  private void putString(String value) {
+    int length = value.length();
+    this.reserve(2 + length);
+    int at = pending.position();
+    byte[] array = pending.array();
+    //ASCII, which ids and names nearly always are, is copied without encoding
+    int i = 0;
+    while (i < length && value.charAt(i) < 0x80) {
+      array[at + 2 + i] = (byte) value.charAt(i);
+      i++;
+    }
+    if (i == length) {
+      checkLength(value, length);
+      pending.putShort((short) length);
+      pending.position(at + 2 + length);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    checkLength(value, bytes.length);
+    this.reserve(2 + bytes.length);
+    pending.putShort((short) bytes.length);
+    pending.put(bytes);
+  }
+
+  /** Whether the string fits in a record, sessions turn longer ones away before any change. */
+  static boolean fits(String value) {
+    //a char takes at most three bytes
+    return value.length() * 3L <= MAX_STRING_BYTES
+        || value.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES;
+  }
+
+  static void checkLength(String value, int bytes) {
+    if (bytes > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException("Too long to log: " + value.substring(0, 32) + "...");
+    }
+  }
+
+  private void reserve(int bytes) {
+    if (pending.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new UncheckedIOException("Mutation log failed, changes are no longer saved", failure);
+    }
+  }
+
+  /** The writer thread: takes what was appended, writes it in one go and syncs when due. */
+  private void write() {
+    try {
+      boolean open = true;
+      while (open) {
+        ByteBuffer batch;
+        long end;
+        boolean force;
+        synchronized (this) {
+          while (pending.position() == 0 && !closing && !forceRequested && !this.syncDue()) {
+            this.wait(this.syncWaitMillis());
+          }
+          batch = pending;
+          pending = spare;
+          spare = batch;
+          end = appended;
+          open = !closing;
+          force = sync == Sync.COMMIT || !open || forceRequested || this.syncDue();
+          forceRequested = false;
+          //appenders waiting for room can go on
+          this.notifyAll();
+        }
+        batch.flip();
+        if (batch.hasRemaining()) {
+          if (segmentSize > HEADER_BYTES && segmentSize + batch.remaining() > segmentBytes) {
+            this.nextSegment();
+          }
+          while (batch.hasRemaining()) {
+            segmentSize += channel.write(batch);
+          }
+        }
+        batch.clear();
+        if (force) {
+          channel.force(false);
+        }
+        synchronized (this) {
+          written = end;
+          if (force) {
+            synced = end;
+            lastSyncNanos = System.nanoTime();
+          }
+          this.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      synchronized (this) {
+        failure = e;
+        this.notifyAll();
+      }
+    } catch (InterruptedException e) {
+      synchronized (this) {
+        failure = new InterruptedIOException("Mutation log writer interrupted");
+        this.notifyAll();
+      }
+    }
+  }
+
+  private boolean syncDue() {
+    return sync == Sync.INTERVAL && written > synced
+        && System.nanoTime() - lastSyncNanos >= TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MILLIS);
+  }
+
+  /** How long the idle writer may sleep, 0 for until it is woken. */
+  private long syncWaitMillis() {
+    if (sync != Sync.INTERVAL || written == synced) {
+      return 0;
+    }
+    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSyncNanos);
+    return Math.max(1, SYNC_INTERVAL_MILLIS - waited);
+  }
+
+  /** Syncs and closes the full segment and starts the next one where it ended. */
+  private void nextSegment() throws IOException {
+    channel.force(false);
+    channel.close();
+    segmentStart += segmentSize - HEADER_BYTES;
+    channel = create(directory, segmentStart);
+    segmentSize = HEADER_BYTES;
+  }
+
+  private static FileChannel create(Path directory, long position) throws IOException {
+    FileChannel channel = FileChannel.open(directory.resolve(name(position)),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).putLong(position).flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+    return channel;
+  }
+
+  static String name(long position) {
+    return String.format("%016x", position) + SUFFIX;
+  }
+
+  private static long position(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseUnsignedLong(name.substring(0, name.length() - SUFFIX.length()), 16);
+  }
+
+  /** Segment files of the log in the order they were written. */
+  static List<Path> segments(Path directory) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(file -> file.getFileName().toString().matches("[0-9a-f]{16}\\" + SUFFIX))
+          .forEach(segments::add);
+    }
+    segments.sort(null);
+    return segments;
+  }
+
+  /**
+   * Replays the records of one segment from position {@code from} until position {@code to}
+   * and returns the size of the file up to there. A damaged record ends the replay of the
+   * last segment, anywhere else it means the log cannot be trusted.
+   */
+  private static long replay(Path segment, long start, long from, long to, Visitor visitor,
+      boolean last) throws IOException {
+    try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+      long fileSize = in.size();
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+      buffer.flip();
+      if (!fill(in, buffer, HEADER_BYTES) || buffer.getInt() != MAGIC) {
+        throw new IOException("Not a mutation log segment: " + segment);
+      }
+      if (buffer.getInt() != VERSION) {
+        throw new IOException("Unsupported mutation log version in " + segment);
+      }
+      if (buffer.getLong() != start) {
+        throw new IOException("Mutation log segment is out of place: " + segment);
+      }
+      long size = HEADER_BYTES;
+      if (from > start) {
+        size = HEADER_BYTES + from - start;
+        if (size > fileSize) {
+          throw new IOException("Mutation log ends at " + (start + fileSize - HEADER_BYTES)
+              + ", before position " + from);
+        }
+        in.position(size);
+        buffer.position(buffer.limit());
+      }
+      CRC32C crc = new CRC32C();
+      Decoder decoder = new Decoder(visitor);
+      while (size < fileSize && start + size - HEADER_BYTES < to) {
+        if (!fill(in, buffer, FRAME_BYTES)) {
+          break;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > fileSize - size - FRAME_BYTES) {
+          break;
+        }
+        if (buffer.capacity() < length) {
+          buffer = ByteBuffer.allocate(length).put(buffer).flip();
+        }
+        if (!fill(in, buffer, length)) {
+          break;
+        }
+        crc.reset();
+        crc.update(buffer.array(), buffer.position(), length);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        int next = buffer.position() + length;
+        decoder.decode(buffer);
+        buffer.position(next);
+        size += FRAME_BYTES + length;
+      }
+      if (size < fileSize && start + size - HEADER_BYTES < to && !last) {
+        throw new IOException("Mutation log segment is damaged at " + (start + size - HEADER_BYTES) + ": " + segment);
+      }
+      return size;
+    }
+  }
+
+  /** Makes sure {@code bytes} can be read from the buffer, false if the file ends first. */
+  private static boolean fill(FileChannel in, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    buffer.compact();
+    while (buffer.position() < bytes) {
+      if (in.read(buffer) < 0) {
+        buffer.flip();
+        return false;
+      }
+    }
+    buffer.flip();
+    return true;
+  }
+
+  /** Turns record bodies back into calls of the visitor. */
+  private static final class Decoder {
+    private final Visitor visitor;
+
+    Decoder(Visitor visitor) {
+      this.visitor = visitor;
+    }
+
+    void decode(ByteBuffer body) throws IOException {
+      byte type = body.get();
+      switch (type) {
+        case CREATE_PLAYLIST:
+          visitor.createPlaylist(string(body), string(body));
+          break;
+        case DELETE_PLAYLIST:
+          visitor.deletePlaylist(string(body), string(body));
+          break;
+        case ADD_VIDEO:
+          visitor.addVideo(string(body), string(body), string(body));
+          break;
+        case REMOVE_VIDEO:
+          visitor.removeVideo(string(body), string(body), string(body));
+          break;
+        case CLEAR_PLAYLIST:
+          visitor.clearPlaylist(string(body), string(body));
+          break;
+        case SET_PLAYLIST:
+          String user = string(body);
+          String name = string(body);
+          int count = body.getInt();
+          List<String> videoIds = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            videoIds.add(string(body));
+          }
+          visitor.setPlaylist(user, name, videoIds);
+          break;
+        case FLAG_VIDEO:
+          String videoId = string(body);
+          String reason = string(body);
+          visitor.flagVideo(videoId, reason.isEmpty() ? null : reason);
+          break;
+        case ALLOW_VIDEO:
+          visitor.allowVideo(string(body));
+          break;
+        case RATINGS:
+          int entries = body.getInt();
+          for (int i = 0; i < entries; i++) {
+            String rated = string(body);
+            int score = body.get();
+            visitor.rateVideo(rated, score, body.getLong());
+          }
+          break;
+        default:
+          throw new IOException("Unknown mutation log record type " + type);
+      }
+    }
+
+    private static String string(ByteBuffer body) {
+      int length = Short.toUnsignedInt(body.getShort());
+      String value = new String(body.array(), body.position(), length, StandardCharsets.UTF_8);
+      body.position(body.position() + length);
+      return value;
+    }
+  }
+}
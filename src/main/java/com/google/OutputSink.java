@@ -0,0 +1,23 @@
+package com.google;
+
+/**
+ * Where a session writes what its commands print. Text may be held back until
+ * {@link #flush()}, which the command parser calls once a command is done and a session calls
+ * before it waits for an answer, so a command's output can reach the stream in one write
+ * instead of one locked write per line. A sink belongs to one session and is not thread safe.
+ */
+interface OutputSink {
+
+  OutputSink print(CharSequence text);
+
+  default OutputSink println(CharSequence text) {
+    return this.print(text).print(System.lineSeparator());
+  }
+
+  default OutputSink printf(String format, Object... args) {
+    return this.print(String.format(format, args));
+  }
+
+  /** Makes everything printed so far visible to the reader. */
+  void flush();
+}
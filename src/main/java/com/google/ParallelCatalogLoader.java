@@ -0,0 +1,149 @@
+package com.google;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Parses the catalog on a fork-join pool. The file is cut into line aligned byte ranges,
+ * every range is parsed by its own {@link CatalogParser} and the rows are handed back in
+ * file order, so a repeated id resolves exactly like the sequential loaders (last row wins).
+ */
+class ParallelCatalogLoader {
+
+  //ranges smaller than this are not worth a task of their own
+  private static final long MIN_SHARD_BYTES = 1L << 20;
+  private static final int SHARDS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private long rows;
+
+  ParallelCatalogLoader(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** Rows parsed by the last {@link #load} call. */
+  long rows() {
+    return rows;
+  }
+
+  /** Parses the catalog and passes every video to the sink, in file order. */
+  void load(Path catalog, Consumer<Video> sink) throws IOException {
+    try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ)) {
+      long[] bounds = splits(channel, pool.getParallelism() * SHARDS_PER_THREAD);
+      List<Shard> shards = new ArrayList<>();
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        Shard shard = new Shard(channel, bounds[i], bounds[i + 1]);
+        shards.add(shard);
+        pool.execute(shard);
+      }
+      rows = 0;
+      //joining in submission order keeps the file order of the rows
+      for (Shard shard : shards) {
+        try {
+          shard.join();
+        } catch (RuntimeException e) {
+          throw ioCause(e);
+        }
+        rows += shard.videos.size();
+        shard.videos.forEach(sink);
+      }
+    }
+  }
+
+  /** Unwraps the IOException of a failed shard, the pool may have wrapped it again. */
+  private static IOException ioCause(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return (IOException) cause;
+      }
+    }
+    throw e;
+  }
+
+  /**
+   * Cuts the channel into at most {@code count} ranges. Every boundary is moved forward to
+   * the start of the next line, the returned offsets run from 0 to the channel size.
+   */
+  static long[] splits(FileChannel channel, int count) throws IOException {
+    long size = channel.size();
+    int ranges = (int) Math.max(1, Math.min(count, size / MIN_SHARD_BYTES));
+    long[] bounds = new long[ranges + 1];
+    int n = 1;
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    for (int i = 1; i < ranges; i++) {
+      long target = Math.max(size * i / ranges, bounds[n - 1]);
+      long aligned = nextLine(channel, target, probe);
+      if (aligned > bounds[n - 1] && aligned < size) {
+        bounds[n++] = aligned;
+      }
+    }
+    bounds[n++] = size;
+    return n == bounds.length ? bounds : Arrays.copyOf(bounds, n);
+  }
+
+  /** Offset of the first line that starts at or after {@code position}. */
+  private static long nextLine(FileChannel channel, long position, ByteBuffer probe)
+      throws IOException {
+    if (position == 0) {
+      return 0;
+    }
+    //a line starts at position only if the byte before it ends a line
+    long offset = position - 1;
+    boolean carriageReturn = false;
+    while (true) {
+      probe.clear();
+      int read = channel.read(probe, offset);
+      if (read <= 0) {
+        return channel.size();
+      }
+      for (int i = 0; i < read; i++) {
+        byte b = probe.get(i);
+        if (carriageReturn) {
+          return b == '\n' ? offset + i + 1 : offset + i;
+        }
+        if (b == '\n') {
+          return offset + i + 1;
+        }
+        carriageReturn = b == '\r';
+      }
+      offset += read;
+    }
+  }
+
+  private static final class Shard extends RecursiveAction {
+    //fork-join tasks are serializable, shards are never serialized
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long from;
+    private final long to;
+    private final List<Video> videos = new ArrayList<>();
+
+    Shard(FileChannel channel, long from, long to) {
+      this.channel = channel;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      CatalogParser parser = new CatalogParser(
+          (title, id, tags, url) -> videos.add(new FieldVideo(title, id, tags, url)));
+      try {
+        parser.parse(channel, from, to);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
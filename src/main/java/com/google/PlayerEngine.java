@@ -0,0 +1,215 @@
+package com.google;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything one process shares between its users: the video library, the playlists of all
+ * users and the rating intake. Each user talks to a session, a {@link VideoPlayer} holding only
+ * what is playing for that user, so one engine serves any number of concurrent sessions.
+ *
+ * <p>A session is driven by one thread at a time, different sessions may run on different
+ * threads at once.
+ *
+ * <p>Playlists, flags and ratings are kept in memory. An engine opened with a
+ * {@link MutationLog} also appends every change to it, checkpoints it in the background and
+ * starts from the latest {@link Checkpoint} and the log after it.
+ */
+class PlayerEngine implements Closeable {
+
+  /** User of sessions opened without one, e.g. the console. */
+  static final String DEFAULT_USER = "default";
+
+  private final VideoLibrary library;
+  private final PlaylistStore playlists = new PlaylistStore();
+  private final RatingIngestor ratingIngestor;
+  private final MutationLog log;
+  //null when changes are not saved
+  private final Checkpointer checkpointer;
+  private final AtomicInteger sessions = new AtomicInteger();
+
+  /** Engine that keeps its changes in memory only. */
+  PlayerEngine(VideoLibrary library) {
+    this.library = library;
+    this.log = MutationLog.DISABLED;
+    this.checkpointer = null;
+    this.ratingIngestor = new RatingIngestor(library, log);
+  }
+
+  /**
+   * Engine that saves its changes to the log in a directory, the changes already there are
+   * applied before the engine is returned.
+   */
+  PlayerEngine(VideoLibrary library, Path logDirectory, MutationLog.Sync sync) throws IOException {
+    this.library = library;
+    Replay replay = new Replay();
+    long checkpointed = Checkpoint.load(logDirectory, replay);
+    this.log = MutationLog.open(logDirectory, sync, checkpointed, MutationLog.SEGMENT_BYTES, replay);
+    this.checkpointer = new Checkpointer(log, checkpointed);
+    this.ratingIngestor = new RatingIngestor(library, log);
+  }
+
+  /**
+   * Engine saving its changes to the directory named by the {@code youtube.log.dir} system
+   * property, or keeping them in memory only when it is not set.
+   */
+  static PlayerEngine fromProperties(VideoLibrary library) throws IOException {
+    String directory = System.getProperty("youtube.log.dir");
+    return directory == null
+        ? new PlayerEngine(library)
+        : new PlayerEngine(library, Paths.get(directory), MutationLog.Sync.fromProperty());
+  }
+
+  /** Starts a session for a user, sessions of the same user share its playlists. */
+  VideoPlayer openSession(String user) {
+    checkUser(user);
+    sessions.incrementAndGet();
+    return new VideoPlayer(this, user);
+  }
+
+  /**
+   * Starts a session for a remote user or a script, e.g. a network connection. Output goes to
+   * {@code out}, questions are answered by {@code prompts} and videos are not opened in a
+   * browser on this machine.
+   */
+  VideoPlayer openSession(String user, OutputSink out, PromptPolicy prompts) {
+    checkUser(user);
+    sessions.incrementAndGet();
+    return new VideoPlayer(this, user, out, prompts, BrowserLauncher.NONE);
+  }
+
+  //every change of a session is logged with its user name
+  private static void checkUser(String user) {
+    if (!MutationLog.fits(user)) {
+      throw new IllegalArgumentException("User name is too long: " + user.substring(0, 32) + "...");
+    }
+  }
+
+  /** Number of sessions opened so far. */
+  int sessions() {
+    return sessions.get();
+  }
+
+  VideoLibrary getLibrary() {
+    return library;
+  }
+
+  PlaylistStore getPlaylists() {
+    return playlists;
+  }
+
+  /** Entry point for ratings arriving from other threads, e.g. event consumers. */
+  RatingIngestor getRatingIngestor() {
+    return ratingIngestor;
+  }
+
+  /** Where changes are saved, {@link MutationLog#DISABLED} when they are not. */
+  MutationLog getLog() {
+    return log;
+  }
+
+  /**
+   * Writes a checkpoint of the changes saved so far and returns the log position it reaches,
+   * see {@link Checkpointer}. Returns 0 when changes are not saved.
+   */
+  long checkpoint() throws IOException {
+    return checkpointer == null ? 0 : checkpointer.checkpoint();
+  }
+
+  /** Saves what is still waiting to be written to the log. */
+  @Override
+  public void close() throws IOException {
+    if (checkpointer != null) {
+      checkpointer.close();
+    }
+    log.close();
+  }
+
+  /** Applies the records of the log at startup, with no session open yet. */
+  private final class Replay implements MutationLog.Visitor {
+    private final long[] counts = new long[Video.MAX_SCORE];
+
+    @Override
+    public void createPlaylist(String user, String name) {
+      playlists.forUser(user).create(name);
+    }
+
+    @Override
+    public void deletePlaylist(String user, String name) {
+      playlists.forUser(user).delete(name);
+    }
+
+    @Override
+    public void addVideo(String user, String name, String videoId) {
+      VideoPlaylist videos = playlists.forUser(user).get(name);
+      Video video = library.getVideo(videoId);
+      if (videos != null && video != null) {
+        videos.add(video);
+      }
+    }
+
+    @Override
+    public void removeVideo(String user, String name, String videoId) {
+      VideoPlaylist videos = playlists.forUser(user).get(name);
+      Video video = library.getVideo(videoId);
+      if (videos != null && video != null) {
+        videos.remove(video);
+      }
+    }
+
+    @Override
+    public void clearPlaylist(String user, String name) {
+      playlists.forUser(user).clear(name);
+    }
+
+    @Override
+    public void setPlaylist(String user, String name, List<String> videoIds) {
+      VideoPlaylist videos = new VideoPlaylist();
+      for (String videoId : videoIds) {
+        Video video = library.getVideo(videoId);
+        if (video != null) {
+          videos.add(video);
+        }
+      }
+      PlaylistRegistry registry = playlists.forUser(user);
+      if (registry.swap(name, videos) == null) {
+        registry.restore(name, videos);
+      }
+    }
+
+    @Override
+    public void flagVideo(String videoId, String reason) {
+      Video video = library.getVideo(videoId);
+      if (video != null) {
+        library.setFlag(video, true);
+        if (reason != null) {
+          video.setFlagReason(reason);
+        }
+      }
+    }
+
+    @Override
+    public void allowVideo(String videoId) {
+      Video video = library.getVideo(videoId);
+      if (video != null) {
+        library.setFlag(video, false);
+        video.setFlagReason("Not supplied");
+      }
+    }
+
+    @Override
+    public void rateVideo(String videoId, int score, long count) {
+      Video video = library.getVideo(videoId);
+      if (video != null && score >= 1 && score <= Video.MAX_SCORE) {
+        counts[score - 1] = count;
+        video.addScores(counts, 0);
+        counts[score - 1] = 0;
+        library.ratingsChanged();
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.google;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Playlists by name, ignoring case. Each playlist is stored under its case-folded name and
+ * keeps the name it was created with for display, so resolving a name the user typed is one
+ * hash lookup however many playlists exist. Safe to share between sessions, each
+ * {@link VideoPlaylist} locks itself.
+ */
+class PlaylistRegistry {
+
+  private final ConcurrentHashMap<String, Entry> playlists = new ConcurrentHashMap<>();
+
+  /** Case folding used for playlist names. */
+  static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  int size() {
+    return playlists.size();
+  }
+
+  boolean contains(String name) {
+    return playlists.containsKey(key(name));
+  }
+
+  /** Name the playlist was created with, null if there is no playlist with the name. */
+  String displayName(String name) {
+    Entry entry = playlists.get(key(name));
+    return entry == null ? null : entry.name;
+  }
+
+  /** Videos of the playlist, null if there is no playlist with the name. */
+  VideoPlaylist get(String name) {
+    Entry entry = playlists.get(key(name));
+    return entry == null ? null : entry.videos;
+  }
+
+  /** Creates an empty playlist, returns false if the name is already taken. */
+  boolean create(String name) {
+    return playlists.putIfAbsent(key(name), new Entry(name, new VideoPlaylist())) == null;
+  }
+
+  /** Empties the playlist and returns the videos it held, null if it does not exist. */
+  VideoPlaylist clear(String name) {
+    return this.swap(name, new VideoPlaylist());
+  }
+
+  /**
+   * Gives the playlist other videos and returns the ones it held, null if it does not exist.
+   * The videos are taken as they are, e.g. the ones a clear returned.
+   */
+  VideoPlaylist swap(String name, VideoPlaylist videos) {
+    Entry entry = playlists.get(key(name));
+    if (entry == null) {
+      return null;
+    }
+    synchronized (entry) {
+      VideoPlaylist previous = entry.videos;
+      entry.videos = videos;
+      return previous;
+    }
+  }
+
+  /** Creates a playlist holding the given videos, returns false if the name is already taken. */
+  boolean restore(String name, VideoPlaylist videos) {
+    return playlists.putIfAbsent(key(name), new Entry(name, videos)) == null;
+  }
+
+  /** Deletes the playlist and returns its display name, null if it does not exist. */
+  String delete(String name) {
+    Entry entry = playlists.remove(key(name));
+    return entry == null ? null : entry.name;
+  }
+
+  /** Display names of all playlists in alphabetical order, ignoring case. */
+  List<String> names() {
+    List<String> names = new ArrayList<>(playlists.size());
+    for (Entry entry : playlists.values()) {
+      names.add(entry.name);
+    }
+    names.sort(Comparator.comparing(PlaylistRegistry::key).thenComparing(Comparator.naturalOrder()));
+    return names;
+  }
+
+  private static final class Entry {
+    final String name;
+    volatile VideoPlaylist videos;
+
+    Entry(String name, VideoPlaylist videos) {
+      this.name = name;
+      this.videos = videos;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.google;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Playlists of every user of a {@link PlayerEngine}, one {@link PlaylistRegistry} per user. */
+class PlaylistStore {
+
+  private final ConcurrentHashMap<String, PlaylistRegistry> users = new ConcurrentHashMap<>();
+
+  /** Playlists of a user, created empty on first use. Sessions of one user share them. */
+  PlaylistRegistry forUser(String user) {
+    return users.computeIfAbsent(user, key -> new PlaylistRegistry());
+  }
+
+  /** Number of users with playlists. */
+  int users() {
+    return users.size();
+  }
+}
@@ -0,0 +1,88 @@
+package com.google;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * How a session answers the questions some commands ask: whether to create a playlist that
+ * does not exist yet, and which search result to play. The console asks the user, a batch run
+ * answers with a fixed policy so no command ever waits for input.
+ */
+interface PromptPolicy {
+
+  /** Answers no and plays nothing, so every command only does what it was asked to. */
+  PromptPolicy DECLINE = new Fixed(false, 0);
+
+  /** Answers yes and plays the first result. */
+  PromptPolicy ACCEPT = new Fixed(true, 1);
+
+  /** Answer to a yes or no question, the question has been printed already. */
+  boolean confirm();
+
+  /** Number of the option to take from 1 to {@code options}, anything else for none. */
+  int choose(int options);
+
+  /**
+   * Asks the user: shows what the session printed so far and takes the next word from
+   * {@code words}. Yes is "yes" in any case, options are picked by number, any other answer
+   * is a no.
+   */
+  static PromptPolicy reading(OutputSink shown, Supplier<String> words) {
+    return new PromptPolicy() {
+      @Override
+      public boolean confirm() {
+        shown.flush();
+        return words.get().toLowerCase(Locale.ROOT).equals("yes");
+      }
+
+      @Override
+      public int choose(int options) {
+        shown.flush();
+        String word = words.get();
+        for (int i = 0; i < word.length(); i++) {
+          if (!Character.isDigit(word.charAt(i))) {
+            return 0;
+          }
+        }
+        try {
+          return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+          //empty or too large to be one of the options
+          return 0;
+        }
+      }
+    };
+  }
+
+  /** The fixed policy with the given name, "decline" or "accept", in any case. */
+  static PromptPolicy named(String name) {
+    switch (name.toLowerCase(Locale.ROOT)) {
+      case "decline":
+        return DECLINE;
+      case "accept":
+        return ACCEPT;
+      default:
+        throw new IllegalArgumentException("Unknown answer policy, use decline or accept: " + name);
+    }
+  }
+
+  final class Fixed implements PromptPolicy {
+    private final boolean confirm;
+    private final int choice;
+
+    private Fixed(boolean confirm, int choice) {
+      this.confirm = confirm;
+      this.choice = choice;
+    }
+
+    @Override
+    public boolean confirm() {
+      return confirm;
+    }
+
+    @Override
+    public int choose(int options) {
+      return Math.min(choice, options);
+    }
+  }
+}
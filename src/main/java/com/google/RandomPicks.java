@@ -0,0 +1,44 @@
+package com.google;
+
+import java.util.SplittableRandom;
+
+/**
+ * The {@link RandomPool} as it was at one change of the library, with an {@link AliasTable}
+ * over it when picks by rating were asked for. Never changed once built, so random picks read
+ * it without a lock; the library replaces it as a whole when it is out of date.
+ */
+final class RandomPicks {
+
+  private final int[] ordinals;
+  private final AliasTable rated;
+  private final long version;
+  private final long builtNanos;
+
+  /** Picks over the ordinals, {@code rated} may be null; {@code version} is the change seen. */
+  RandomPicks(int[] ordinals, AliasTable rated, long version, long builtNanos) {
+    this.ordinals = ordinals;
+    this.rated = rated;
+    this.version = version;
+    this.builtNanos = builtNanos;
+  }
+
+  boolean isRated() {
+    return rated != null;
+  }
+
+  long version() {
+    return version;
+  }
+
+  long builtNanos() {
+    return builtNanos;
+  }
+
+  /** An ordinal, each equally likely or by weight if {@code byRating}, -1 if there is none. */
+  int pick(SplittableRandom random, boolean byRating) {
+    if (byRating) {
+      return rated.pick(random);
+    }
+    return ordinals.length == 0 ? -1 : ordinals[random.nextInt(ordinals.length)];
+  }
+}
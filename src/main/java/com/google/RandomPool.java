@@ -0,0 +1,67 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The ordinals of the videos a random pick may land on, in no order. Adding, removing and
+ * picking are constant time: an ordinal is removed by moving the last one into its slot.
+ */
+class RandomPool {
+
+  //ordinals in the pool, then where each ordinal sits in it, -1 when it is not in the pool
+  private int[] ordinals = new int[16];
+  private int[] slots = new int[16];
+  private int size;
+
+  RandomPool() {
+    Arrays.fill(slots, -1);
+  }
+
+  /** Adds an ordinal, nothing happens if it is in the pool already. */
+  void add(int ordinal) {
+    if (ordinal >= slots.length) {
+      int length = slots.length;
+      slots = Arrays.copyOf(slots, Math.max(ordinal + 1, length * 2));
+      Arrays.fill(slots, length, slots.length, -1);
+    }
+    if (slots[ordinal] >= 0) {
+      return;
+    }
+    if (size == ordinals.length) {
+      ordinals = Arrays.copyOf(ordinals, size * 2);
+    }
+    slots[ordinal] = size;
+    ordinals[size++] = ordinal;
+  }
+
+  /** Removes an ordinal, nothing happens if it is not in the pool. */
+  void remove(int ordinal) {
+    if (ordinal >= slots.length || slots[ordinal] < 0) {
+      return;
+    }
+    int slot = slots[ordinal];
+    int last = ordinals[--size];
+    ordinals[slot] = last;
+    slots[last] = slot;
+    slots[ordinal] = -1;
+  }
+
+  boolean contains(int ordinal) {
+    return ordinal < slots.length && slots[ordinal] >= 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Copy of the ordinals in the pool, in no order. */
+  int[] toArray() {
+    return Arrays.copyOf(ordinals, size);
+  }
+
+  /** A uniformly chosen ordinal, -1 when the pool is empty. */
+  int pick(SplittableRandom random) {
+    return size == 0 ? -1 : ordinals[random.nextInt(size)];
+  }
+}
@@ -0,0 +1,141 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies batches of ratings pushed by any number of producer threads. Each batch is first
+ * combined per video and score on the calling thread, then added to the counters of every
+ * rated video with one atomic add per distinct (video, score), so a popular video costs one
+ * contended update per batch instead of one per rating.
+ *
+ * <p>Readers need no lock: a rating touches exactly one counter of its video, so whatever mix
+ * of counters a reader sees is the state after some set of ratings and the average it computes
+ * always matches a count that really happened.
+ */
+class RatingIngestor {
+
+  private final VideoLibrary library;
+  private final MutationLog log;
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  //one combiner per producer thread, reused across batches
+  private final ThreadLocal<Combiner> combiners = ThreadLocal.withInitial(Combiner::new);
+
+  RatingIngestor(VideoLibrary library) {
+    this(library, MutationLog.DISABLED);
+  }
+
+  /** Ingestor that also saves every batch to the log, as one record. */
+  RatingIngestor(VideoLibrary library, MutationLog log) {
+    this.library = library;
+    this.log = log;
+  }
+
+  /**
+   * Applies the first {@code length} ratings of the batch. Ratings of unknown videos or with a
+   * score outside 1 to 5 are skipped. Returns the number of ratings applied.
+   */
+  int ingest(String[] videoIds, int[] scores, int length) {
+    Combiner combiner = combiners.get();
+    int applied = 0;
+    try {
+      for (int i = 0; i < length; i++) {
+        int score = scores[i];
+        if (score < 1 || score > Video.MAX_SCORE) {
+          continue;
+        }
+        Video video = library.getVideo(videoIds[i]);
+        if (video == null) {
+          continue;
+        }
+        combiner.add(video, score);
+        applied++;
+      }
+      combiner.apply(log);
+      if (applied > 0) {
+        library.ratingsChanged();
+      }
+    } finally {
+      combiner.clear();
+    }
+    accepted.add(applied);
+    rejected.add(length - applied);
+    return applied;
+  }
+
+  /** Ratings applied since this ingestor was created. */
+  long getAccepted() {
+    return accepted.sum();
+  }
+
+  /** Ratings skipped since this ingestor was created. */
+  long getRejected() {
+    return rejected.sum();
+  }
+
+  /** Per video score counts of the batch being ingested, keyed by the video ordinal. */
+  private static final class Combiner {
+    //open addressing from ordinal to slot + 1, 0 marks a free entry
+    private int[] keys = new int[128];
+    private int[] values = new int[128];
+    private Video[] videos = new Video[64];
+    private long[] counts = new long[64 * Video.MAX_SCORE];
+    private int size;
+
+    void add(Video video, int score) {
+      int ordinal = video.getOrdinal();
+      int mask = keys.length - 1;
+      int entry = (ordinal * 0x9E3779B9) >>> 7 & mask;
+      while (values[entry] != 0 && keys[entry] != ordinal) {
+        entry = (entry + 1) & mask;
+      }
+      int slot = values[entry] - 1;
+      if (slot < 0) {
+        slot = size++;
+        if (slot == videos.length) {
+          videos = Arrays.copyOf(videos, slot * 2);
+          counts = Arrays.copyOf(counts, slot * 2 * Video.MAX_SCORE);
+        }
+        videos[slot] = video;
+        keys[entry] = ordinal;
+        values[entry] = slot + 1;
+        if (size * 2 > keys.length) {
+          this.grow();
+        }
+      }
+      counts[slot * Video.MAX_SCORE + score - 1]++;
+    }
+
+    void apply(MutationLog log) {
+      for (int slot = 0; slot < size; slot++) {
+        videos[slot].addScores(counts, slot * Video.MAX_SCORE);
+      }
+      if (size > 0) {
+        log.rateVideos(videos, counts, size);
+      }
+    }
+
+    void clear() {
+      Arrays.fill(videos, 0, size, null);
+      Arrays.fill(counts, 0, size * Video.MAX_SCORE, 0);
+      Arrays.fill(values, 0);
+      size = 0;
+    }
+
+    private void grow() {
+      keys = new int[keys.length * 2];
+      values = new int[values.length * 2];
+      int mask = keys.length - 1;
+      for (int slot = 0; slot < size; slot++) {
+        int ordinal = videos[slot].getOrdinal();
+        int entry = (ordinal * 0x9E3779B9) >>> 7 & mask;
+        while (values[entry] != 0) {
+          entry = (entry + 1) & mask;
+        }
+        keys[entry] = ordinal;
+        values[entry] = slot + 1;
+      }
+    }
+  }
+}
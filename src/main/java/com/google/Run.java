@@ -5,21 +5,33 @@ import java.util.Arrays;
 import java.util.Scanner;
 
 public class Run {
-  public static void main(String[] args){
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && args[0].equals("--serve")) {
+      //serves the commands over sockets instead, see CommandServer
+      CommandServer.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--batch")) {
+      //runs a script without prompts, see BatchRunner
+      BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     System.out.println("Hello and welcome to YouTube, what would you like to do? "
         + "Enter HELP for list of available commands or EXIT to terminate.");
-    var videoPlayer = new VideoPlayer();
-    var parser = new CommandParser(videoPlayer);
-    var scanner = new Scanner(System.in);
-    while (true) {
-      System.out.print("YT> ");
-      var input = scanner.nextLine();
-      if (input.equalsIgnoreCase("exit")) {
-        System.out.println("YouTube has now terminated its execution. " +
-            "Thank you and goodbye!");
-        return;
+    try (var engine = PlayerEngine.fromProperties(new VideoLibrary())) {
+      var videoPlayer = engine.openSession(PlayerEngine.DEFAULT_USER);
+      var parser = new CommandParser(videoPlayer);
+      var scanner = new Scanner(System.in);
+      while (true) {
+        System.out.print("YT> ");
+        var input = scanner.nextLine();
+        if (input.equalsIgnoreCase("exit")) {
+          System.out.println("YouTube has now terminated its execution. " +
+              "Thank you and goodbye!");
+          return;
+        }
+        parser.executeLine(input);
       }
-      parser.executeCommand(Arrays.asList(input.split("\\s+")));
     }
   }
 }
@@ -0,0 +1,80 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inverted index from a normalized tag to the ordinals of the videos carrying it. Posting
+ * lists are sorted int arrays, a lookup costs one hash probe plus the number of matches.
+ */
+class TagIndex {
+
+  private static final int[] EMPTY = new int[0];
+
+  private final HashMap<String, Posting> postings = new HashMap<>();
+
+  /** Case folding used for tags, the same rule the search command always applied. */
+  static String normalize(String tag) {
+    return tag.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Adds the tags of a video. Ordinals are handed out in ascending order, so adding a new
+   * video appends to the end of each posting list.
+   */
+  void add(int ordinal, List<String> tags) {
+    for (String tag : tags) {
+      postings.computeIfAbsent(normalize(tag), key -> new Posting()).add(ordinal);
+    }
+  }
+
+  /** Removes a video from the posting lists of its tags. */
+  void remove(int ordinal, List<String> tags) {
+    for (String tag : tags) {
+      String key = normalize(tag);
+      Posting posting = postings.get(key);
+      if (posting != null && posting.remove(ordinal) && posting.size == 0) {
+        postings.remove(key);
+      }
+    }
+  }
+
+  /** Sorted ordinals of the videos with the tag, ignoring case. */
+  int[] find(String tag) {
+    Posting posting = postings.get(normalize(tag));
+    return posting == null ? EMPTY : Arrays.copyOf(posting.ordinals, posting.size);
+  }
+
+  /** Number of distinct normalized tags. */
+  int size() {
+    return postings.size();
+  }
+
+  private static final class Posting {
+    int[] ordinals = new int[4];
+    int size;
+
+    void add(int ordinal) {
+      if (size > 0 && ordinals[size - 1] == ordinal) {
+        //same tag twice on one video, e.g. "#cat , #Cat"
+        return;
+      }
+      if (size == ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, size * 2);
+      }
+      ordinals[size++] = ordinal;
+    }
+
+    boolean remove(int ordinal) {
+      int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+      if (position < 0) {
+        return false;
+      }
+      System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+      size--;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.google;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of every distinct tag, each numbered once. Videos keep the numbers of their tags
+ * instead of strings of their own, so a tag shared by a million videos is one string on the
+ * heap.
+ *
+ * <p>Numbers are handed out under a lock, finding the number of a known tag and the tag of a
+ * number take none, so loaders on many threads share one vocabulary.
+ */
+final class TagVocabulary {
+
+  /** The vocabulary videos use, shared by every library of the process. */
+  static final TagVocabulary SHARED = new TagVocabulary();
+
+  private static final int[] NONE = new int[0];
+
+  private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+  //tags by number, replaced by a longer copy when full; a number is published through ids
+  //only after its tag is in the array, and every later copy has it too
+  private volatile String[] tags = new String[64];
+  private int size;
+
+  /** Number of the tag, a new one if the tag was never seen. */
+  int id(String tag) {
+    Integer id = ids.get(tag);
+    return id != null ? id : this.add(tag);
+  }
+
+  private synchronized int add(String tag) {
+    Integer id = ids.get(tag);
+    if (id != null) {
+      return id;
+    }
+    String[] current = tags;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, size * 2);
+      tags = current;
+    }
+    current[size] = tag;
+    ids.put(tag, size);
+    return size++;
+  }
+
+  /** Numbers of the tags, in the same order. */
+  int[] ids(List<String> tags) {
+    if (tags.isEmpty()) {
+      return NONE;
+    }
+    int[] numbers = new int[tags.size()];
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i] = this.id(tags.get(i));
+    }
+    return numbers;
+  }
+
+  /** Tag with the number. */
+  String tag(int id) {
+    return tags[id];
+  }
+
+  /** Number of distinct tags. */
+  synchronized int size() {
+    return size;
+  }
+
+  /** Read only list of the tags with the numbers, decoded on access. */
+  List<String> tags(int[] ids) {
+    return new Tags(this, ids);
+  }
+
+  private static final class Tags extends AbstractList<String> implements RandomAccess {
+    private final TagVocabulary vocabulary;
+    private final int[] ids;
+
+    Tags(TagVocabulary vocabulary, int[] ids) {
+      this.vocabulary = vocabulary;
+      this.ids = ids;
+    }
+
+    @Override
+    public String get(int index) {
+      return vocabulary.tag(ids[index]);
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+  }
+}
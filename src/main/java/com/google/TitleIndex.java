@@ -0,0 +1,215 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Substring index over video titles. Every lower-cased title is cut into trigrams and each
+ * trigram keeps a posting list of the titles containing it. A query intersects the postings
+ * of its own trigrams and verifies the few candidates left with {@code String.contains}.
+ *
+ * <p>Postings hold title ranks rather than ordinals: rank r is the r-th video of the
+ * {@link TitleOrder} the index was built from. Intersections therefore come out already
+ * sorted by title. The index itself is immutable, the library scans videos added after it
+ * was built separately and drops ordinals removed since.
+ */
+class TitleIndex {
+
+  private static final int[] EMPTY = new int[0];
+
+  //ordinal of the video at each rank
+  private final int[] byRank;
+  //lower-cased title of each rank, used to verify candidates
+  private final String[] lowered;
+  private final TrigramTable table = new TrigramTable();
+
+  /**
+   * Indexes the titles of the ordinals in {@code byRank}, which must already be in title
+   * order. {@code titles} maps an ordinal to its title.
+   */
+  TitleIndex(int[] byRank, IntFunction<String> titles) {
+    this.byRank = byRank;
+    this.lowered = new String[byRank.length];
+    for (int rank = 0; rank < byRank.length; rank++) {
+      String title = normalize(titles.apply(byRank[rank]));
+      lowered[rank] = title;
+      for (int i = 0; i + 3 <= title.length(); i++) {
+        table.add(key(title, i), rank);
+      }
+    }
+    table.seal();
+  }
+
+  /** Case folding used for titles and search terms. */
+  static String normalize(String text) {
+    return text.toLowerCase(Locale.ROOT);
+  }
+
+  /** Number of indexed titles. */
+  int size() {
+    return byRank.length;
+  }
+
+  /**
+   * Ordinals of the videos whose title contains the term, ignoring case, sorted by title.
+   */
+  int[] search(String term) {
+    String needle = normalize(term);
+    int[] ranks;
+    if (needle.length() < 3) {
+      //too short for a trigram, every title is a candidate
+      ranks = null;
+    } else {
+      ranks = this.candidates(needle);
+    }
+    int limit = ranks == null ? byRank.length : ranks.length;
+    int[] matches = new int[Math.min(limit, 16)];
+    int count = 0;
+    for (int i = 0; i < limit; i++) {
+      int rank = ranks == null ? i : ranks[i];
+      if (lowered[rank].contains(needle)) {
+        if (count == matches.length) {
+          matches = Arrays.copyOf(matches, count * 2);
+        }
+        matches[count++] = byRank[rank];
+      }
+    }
+    return count == matches.length ? matches : Arrays.copyOf(matches, count);
+  }
+
+  /** Ranks of the titles holding every trigram of the needle, ascending. */
+  private int[] candidates(String needle) {
+    int grams = needle.length() - 2;
+    int[][] postings = new int[grams][];
+    for (int i = 0; i < grams; i++) {
+      postings[i] = table.get(key(needle, i));
+      if (postings[i] == null) {
+        return EMPTY;
+      }
+    }
+    Arrays.sort(postings, Comparator.comparingInt(posting -> posting.length));
+    int[] result = postings[0];
+    int size = result.length;
+    for (int i = 1; i < grams && size > 0; i++) {
+      if (postings[i] == postings[i - 1]) {
+        continue;
+      }
+      result = intersect(result, size, postings[i]);
+      size = result.length;
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /** Intersection of a sorted prefix with a longer sorted array, galloping through the latter. */
+  private static int[] intersect(int[] small, int size, int[] large) {
+    int[] out = new int[size];
+    int count = 0;
+    int from = 0;
+    for (int i = 0; i < size && from < large.length; i++) {
+      int value = small[i];
+      int step = 1;
+      int high = from;
+      while (high < large.length && large[high] < value) {
+        from = high + 1;
+        high += step;
+        step <<= 1;
+      }
+      int found = Arrays.binarySearch(large, from, Math.min(high + 1, large.length), value);
+      if (found >= 0) {
+        out[count++] = value;
+        from = found + 1;
+      } else {
+        from = -found - 1;
+      }
+    }
+    return Arrays.copyOf(out, count);
+  }
+
+  private static long key(String text, int offset) {
+    return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16)
+        | text.charAt(offset + 2);
+  }
+
+  /** Open addressing map from a packed trigram to its posting list of ranks. */
+  private static final class TrigramTable {
+    private long[] keys = new long[1024];
+    private int[][] postings = new int[1024][];
+    private int[] sizes = new int[1024];
+    private boolean[] used = new boolean[1024];
+    private int count;
+
+    void add(long key, int rank) {
+      int slot = this.slot(key);
+      if (!used[slot]) {
+        if (2 * (count + 1) > keys.length) {
+          this.grow();
+          slot = this.slot(key);
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        postings[slot] = new int[2];
+        count++;
+      }
+      int size = sizes[slot];
+      int[] posting = postings[slot];
+      if (size > 0 && posting[size - 1] == rank) {
+        //trigram repeated inside the same title
+        return;
+      }
+      if (size == posting.length) {
+        posting = Arrays.copyOf(posting, size * 2);
+        postings[slot] = posting;
+      }
+      posting[size] = rank;
+      sizes[slot] = size + 1;
+    }
+
+    /** Trims the posting lists once every title was added. */
+    void seal() {
+      for (int slot = 0; slot < keys.length; slot++) {
+        if (used[slot] && sizes[slot] != postings[slot].length) {
+          postings[slot] = Arrays.copyOf(postings[slot], sizes[slot]);
+        }
+      }
+      sizes = null;
+    }
+
+    int[] get(long key) {
+      int slot = this.slot(key);
+      return used[slot] ? postings[slot] : null;
+    }
+
+    private int slot(long key) {
+      int mask = keys.length - 1;
+      int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (used[slot] && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[][] oldPostings = postings;
+      int[] oldSizes = sizes;
+      boolean[] oldUsed = used;
+      int capacity = oldKeys.length * 2;
+      keys = new long[capacity];
+      postings = new int[capacity][];
+      sizes = new int[capacity];
+      used = new boolean[capacity];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldUsed[i]) {
+          int slot = this.slot(oldKeys[i]);
+          used[slot] = true;
+          keys[slot] = oldKeys[i];
+          postings[slot] = oldPostings[i];
+          sizes[slot] = oldSizes[i];
+        }
+      }
+    }
+  }
+}
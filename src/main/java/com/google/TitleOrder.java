@@ -0,0 +1,126 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntFunction;
+
+/**
+ * Ordinals of the library kept sorted by title, equal titles by ordinal. Built with one
+ * sort and then maintained by binary search and a shift on every add or remove, so listing
+ * the library is a walk over an int array and a page is a direct offset into it.
+ */
+class TitleOrder {
+
+  /** The order kept by this class, as a comparator over videos. */
+  static final Comparator<Video> BY_TITLE =
+      Comparator.comparing(Video::getTitle).thenComparingInt(Video::getOrdinal);
+
+  private final IntFunction<String> titles;
+  private int[] ordinals;
+  private int size;
+  //position of every ordinal in the order, built when first needed and dropped on a change
+  private int[] positions;
+
+  /**
+   * Sorts the given ordinals, which must be ascending. {@code titles} maps an ordinal to its
+   * title and must keep working for an ordinal until it was removed from this order.
+   */
+  TitleOrder(int[] ascending, int count, IntFunction<String> titles) {
+    this.titles = titles;
+    String[] keys = new String[count];
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = titles.apply(ascending[i]);
+      order[i] = i;
+    }
+    //parallelSort on objects is stable, equal titles stay in ordinal order
+    Arrays.parallelSort(order, Comparator.comparing(i -> keys[i]));
+    this.ordinals = new int[Math.max(16, count)];
+    for (int position = 0; position < count; position++) {
+      ordinals[position] = ascending[order[position]];
+    }
+    this.size = count;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Ordinal at a position of the order. */
+  int ordinalAt(int position) {
+    return ordinals[position];
+  }
+
+  /** Copy of the ordinals in title order. */
+  int[] toArray() {
+    return Arrays.copyOf(ordinals, size);
+  }
+
+  /**
+   * The given ordinals, each of them in this order, sorted by title. Compares their positions
+   * instead of their titles.
+   */
+  int[] sort(int[] members) {
+    if (positions == null) {
+      int max = -1;
+      for (int position = 0; position < size; position++) {
+        max = Math.max(max, ordinals[position]);
+      }
+      positions = new int[max + 1];
+      for (int position = 0; position < size; position++) {
+        positions[ordinals[position]] = position;
+      }
+    }
+    int[] sorted = new int[members.length];
+    for (int i = 0; i < members.length; i++) {
+      sorted[i] = positions[members[i]];
+    }
+    Arrays.sort(sorted);
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = ordinals[sorted[i]];
+    }
+    return sorted;
+  }
+
+  void add(int ordinal) {
+    positions = null;
+    int position = -this.search(titles.apply(ordinal), ordinal) - 1;
+    if (size == ordinals.length) {
+      ordinals = Arrays.copyOf(ordinals, size * 2);
+    }
+    System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+    ordinals[position] = ordinal;
+    size++;
+  }
+
+  void remove(int ordinal) {
+    positions = null;
+    int position = this.search(titles.apply(ordinal), ordinal);
+    if (position >= 0) {
+      System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+      size--;
+    }
+  }
+
+  /** Binary search for (title, ordinal), same contract as {@code Arrays.binarySearch}. */
+  private int search(String title, int ordinal) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int other = ordinals[middle];
+      int compare = titles.apply(other).compareTo(title);
+      if (compare == 0) {
+        compare = Integer.compare(other, ordinal);
+      }
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+}
@@ -0,0 +1,133 @@
+package com.google;
+
+/**
+ * The commands of a session that can be undone and redone, newest last, in a ring of fixed
+ * size. Each entry is the verb that ran with up to two words and, for a cleared or deleted
+ * playlist, the videos it held, so undoing puts the same structure back instead of adding the
+ * videos one by one. The oldest entries are dropped once the ring is full or once the saved
+ * playlists hold more videos than the budget, so a session never keeps more than that alive.
+ */
+final class UndoJournal {
+
+  /** Levels of undo a session keeps by default. */
+  static final int DEFAULT_CAPACITY = 64;
+  /** Videos in saved playlists a session keeps by default. */
+  static final int DEFAULT_SAVED_VIDEOS = 100_000;
+
+  private final Verb[] verbs;
+  private final String[] firsts;
+  private final String[] seconds;
+  private final VideoPlaylist[] saved;
+  private final int savedBudget;
+  //entries from start: done ones can be undone, the undone ones after them redone
+  private int start;
+  private int done;
+  private int undone;
+  private int savedVideos;
+
+  UndoJournal() {
+    this(DEFAULT_CAPACITY, DEFAULT_SAVED_VIDEOS);
+  }
+
+  UndoJournal(int capacity, int savedBudget) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Journal needs room for one command: " + capacity);
+    }
+    this.verbs = new Verb[capacity];
+    this.firsts = new String[capacity];
+    this.seconds = new String[capacity];
+    this.saved = new VideoPlaylist[capacity];
+    this.savedBudget = savedBudget;
+  }
+
+  /** Records a command that ran, what could be redone is forgotten. */
+  void record(Verb verb, String first, String second, VideoPlaylist videos) {
+    while (undone > 0) {
+      this.clear(this.slot(done + --undone));
+    }
+    if (done == verbs.length) {
+      this.dropOldest();
+    }
+    int slot = this.slot(done++);
+    verbs[slot] = verb;
+    firsts[slot] = first;
+    seconds[slot] = second;
+    this.save(slot, videos);
+    while (savedVideos > savedBudget && done > 1) {
+      this.dropOldest();
+    }
+  }
+
+  /** Entry to undo next and moves back past it, -1 if there is nothing to undo. */
+  int undo() {
+    if (done == 0) {
+      return -1;
+    }
+    undone++;
+    return this.slot(--done);
+  }
+
+  /** Entry to redo next and moves forward past it, -1 if there is nothing to redo. */
+  int redo() {
+    if (undone == 0) {
+      return -1;
+    }
+    undone--;
+    return this.slot(done++);
+  }
+
+  /** Number of commands that can be undone. */
+  int undoable() {
+    return done;
+  }
+
+  /** Number of commands that can be redone. */
+  int redoable() {
+    return undone;
+  }
+
+  Verb verb(int slot) {
+    return verbs[slot];
+  }
+
+  String first(int slot) {
+    return firsts[slot];
+  }
+
+  String second(int slot) {
+    return seconds[slot];
+  }
+
+  VideoPlaylist saved(int slot) {
+    return saved[slot];
+  }
+
+  /** Replaces the playlist saved with an entry, e.g. by what undoing it took out. */
+  void save(int slot, VideoPlaylist videos) {
+    if (saved[slot] != null) {
+      savedVideos -= saved[slot].size();
+    }
+    saved[slot] = videos;
+    if (videos != null) {
+      savedVideos += videos.size();
+    }
+  }
+
+  private void dropOldest() {
+    this.clear(start);
+    start = this.slot(1);
+    done--;
+  }
+
+  private void clear(int slot) {
+    this.save(slot, null);
+    verbs[slot] = null;
+    firsts[slot] = null;
+    seconds[slot] = null;
+  }
+
+  private int slot(int offset) {
+    int slot = start + offset;
+    return slot < verbs.length ? slot : slot - verbs.length;
+  }
+}
@@ -0,0 +1,122 @@
+package com.google;
+
+import java.util.Arrays;
+
+/**
+ * The commands {@link CommandParser} understands and how many arguments each takes. Verbs are
+ * resolved ignoring case through a small hash table without collisions, set up once when the
+ * class loads, so finding the verb of a line costs one hash and one comparison.
+ */
+enum Verb {
+  NUMBER_OF_VIDEOS(0, 0, null),
+  SHOW_ALL_VIDEOS(0, 2,
+      "Please enter SHOW_ALL_VIDEOS optionally followed by page number and page size."),
+  PLAY(1, 1, "Please enter PLAY command followed by video_id."),
+  PLAY_RANDOM(0, 1, "Please enter PLAY_RANDOM optionally followed by RATED."),
+  STOP(0, 0, null),
+  PAUSE(0, 0, null),
+  CONTINUE(0, 0, null),
+  SHOW_PLAYING(0, 0, null),
+  CREATE_PLAYLIST(1, 1, "Please enter CREATE_PLAYLIST command followed by a playlist name."),
+  ADD_TO_PLAYLIST(2, 2,
+      "Please enter ADD_TO_PLAYLIST command followed by a playlist name and video_id to add."),
+  PLAY_PLAYLIST(1, 1, "Please enter PLAY_PLAYLIST command followed by playlist name."),
+  NEXT(0, 0, null),
+  PREVIOUS(0, 0, null),
+  SHOW_CURRENT_PLAYLIST(0, 0, null),
+  CLOSE_PLAYLIST(0, 0, null),
+  REMOVE_FROM_PLAYLIST(2, 2, "Please enter REMOVE_FROM_PLAYLIST command followed by a "
+      + "playlist name and video_id to remove."),
+  CLEAR_PLAYLIST(1, 1, "Please enter CLEAR_PLAYLIST command followed by a playlist name."),
+  DELETE_PLAYLIST(1, 1, "Please enter DELETE_PLAYLIST command followed by a playlist name."),
+  SHOW_PLAYLIST(1, 1, "Please enter SHOW_PLAYLIST command followed by a playlist name."),
+  SHOW_ALL_PLAYLISTS(0, 0, null),
+  SEARCH_VIDEOS(1, 1, "Please enter SEARCH_VIDEOS command followed by a search term."),
+  SEARCH_VIDEOS_WITH_TAG(1, 1,
+      "Please enter SEARCH_VIDEOS_WITH_TAG command followed by a video tag."),
+  FLAG_VIDEO(1, 2,
+      "Please enter FLAG_VIDEO command followed by a video_id and an optional flag reason."),
+  ALLOW_VIDEO(1, 1, "Please enter ALLOW_VIDEO command followed by a video_id."),
+  RATE_VIDEO(2, 2, "Please enter RATE_VIDEO followed by a video_id and an integer rating."),
+  HELP(0, 0, null),
+  UNDO(0, 0, null),
+  REDO(0, 0, null);
+
+  //twice as many slots as verbs, enough for a multiplier without collisions to exist
+  private static final int BITS = 6;
+  private static final Verb[] TABLE = new Verb[1 << BITS];
+  private static final int MULTIPLIER;
+
+  static {
+    int multiplier = 0x9E3779B1;
+    while (!fill(multiplier)) {
+      multiplier += 2;
+    }
+    MULTIPLIER = multiplier;
+  }
+
+  /** Fewest arguments the verb takes. */
+  final int minArguments;
+  /** Most arguments the verb takes. */
+  final int maxArguments;
+  /** What to tell the user when the arguments do not fit. */
+  final String usage;
+
+  Verb(int minArguments, int maxArguments, String usage) {
+    this.minArguments = minArguments;
+    this.maxArguments = maxArguments;
+    this.usage = usage != null ? usage : this.name() + " takes no arguments.";
+  }
+
+  /** Whether a command with this many arguments is well formed. */
+  boolean accepts(int arguments) {
+    return arguments >= minArguments && arguments <= maxArguments;
+  }
+
+  /** The verb spelled by {@code text[start, end)} in any case, null if there is none. */
+  static Verb lookup(CharSequence text, int start, int end) {
+    Verb verb = TABLE[slot(hash(text, start, end), MULTIPLIER)];
+    if (verb == null || verb.name().length() != end - start) {
+      return null;
+    }
+    String name = verb.name();
+    for (int i = start; i < end; i++) {
+      if (upper(text.charAt(i)) != name.charAt(i - start)) {
+        return null;
+      }
+    }
+    return verb;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = end - start;
+    for (int i = start; i < end; i++) {
+      hash = hash * 31 + upper(text.charAt(i));
+    }
+    return hash;
+  }
+
+  //commands are typed in ASCII, everything else takes the slow path
+  private static char upper(char c) {
+    if (c < 0x80) {
+      return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+    return Character.toUpperCase(c);
+  }
+
+  private static int slot(int hash, int multiplier) {
+    return (hash * multiplier) >>> (Integer.SIZE - BITS);
+  }
+
+  private static boolean fill(int multiplier) {
+    Arrays.fill(TABLE, null);
+    for (Verb verb : values()) {
+      int slot = slot(hash(verb.name(), 0, verb.name().length()), multiplier);
+      if (TABLE[slot] != null) {
+        return false;
+      }
+      TABLE[slot] = verb;
+    }
+    return true;
+  }
+}
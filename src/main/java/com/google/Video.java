@@ -1,79 +1,98 @@
 package com.google;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-/** A class used to represent a video. */
-class Video {
-
-  private final String title;
-  private final String videoId;
-  private final List<String> tags;
-  private boolean flag;
-  //video rating from 1-5
-  private List<Integer> scores;
-  private String flagReason;
-  private final String URL;
-
-
-  Video(String title, String videoId, List<String> tags, String url) {
-    this.title = title;
-    this.videoId = videoId;
-    this.tags = Collections.unmodifiableList(tags);
-    this.flag = false;
-    this.flagReason = "Not supplied";
-    this.scores = new ArrayList<>();
-    this.URL = url;
-  }
+/**
+ * A class used to represent a video. Where its fields live is up to the subclass: a
+ * {@link FieldVideo} holds its own, a row of a {@link ColumnStore} reads them from the columns.
+ */
+abstract class Video {
 
-  public void setFlag(boolean flag) {
-    this.flag = flag;
-  }
+  /** Ratings are whole stars from 1 to MAX_SCORE. */
+  static final int MAX_SCORE = 5;
 
-  public void setFlagReason(String flagReason) {
-    this.flagReason = flagReason;
-  }
+  //position in the library, assigned when the video is registered
+  private int ordinal = -1;
 
-  /** add a new score **/
-  public void addScore(int score) { this.scores.add(score); }
+  public abstract void setFlag(boolean flag);
+
+  public abstract void setFlagReason(String flagReason);
 
   /** Checks if the video is flagged **/
-  public boolean isFlag() {
-    return flag;
-  }
+  public abstract boolean isFlag();
 
   /** Returns the reason for this video being flagged **/
-  public String getFlagReason() {
-    return flagReason;
-  }
+  public abstract String getFlagReason();
 
-  public String getURL() {
-    return URL;
-  }
+  public abstract String getURL();
 
   /** Returns the title of the video. */
-  String getTitle() { return title;}
+  abstract String getTitle();
 
   /** Returns the video id of the video. */
-  String getVideoId() { return videoId; }
+  abstract String getVideoId();
 
   /** Returns a readonly collection of the tags of the video. */
-  List<String> getTags() {
-    return tags;
+  abstract List<String> getTags();
+
+  /** Adds {@code count} ratings with a score known to be valid, atomically. */
+  abstract void addRatings(int score, long count);
+
+  /** Number of ratings with the given score. */
+  abstract long ratingCount(int score);
+
+  /** Returns the position of the video in its library, -1 before it was registered. */
+  int getOrdinal() {
+    return ordinal;
+  }
+
+  void setOrdinal(int ordinal) {
+    this.ordinal = ordinal;
   }
 
+  /** add a new score, counted atomically so concurrent raters never lose an update **/
+  public void addScore(int score) {
+    if (score < 1 || score > MAX_SCORE) {
+      throw new IllegalArgumentException("Score should be from 1 to " + MAX_SCORE + ": " + score);
+    }
+    this.addRatings(score, 1);
+  }
+
+  /**
+   * Adds ratings in bulk, {@code counts[offset + score - 1]} holds the number of ratings with
+   * each score.
+   */
+  void addScores(long[] counts, int offset) {
+    for (int i = 0; i < MAX_SCORE; i++) {
+      long ratings = counts[offset + i];
+      if (ratings != 0) {
+        this.addRatings(i + 1, ratings);
+      }
+    }
+  }
+
+  /** Total number of ratings. */
+  long ratingCount() {
+    long count = 0;
+    for (int score = 1; score <= MAX_SCORE; score++) {
+      count += this.ratingCount(score);
+    }
+    return count;
+  }
+
+  /** Mean of all ratings, 0 when the video was never rated. Constant time, no allocation. */
   public float averageScore(){
-    Object[] scores = this.scores.toArray();
-    int size = scores.length;
-    if (size == 0){
-      return 0;
+    long count = 0;
+    long sum = 0;
+    for (int score = 1; score <= MAX_SCORE; score++) {
+      long ratings = this.ratingCount(score);
+      count += ratings;
+      sum += ratings * score;
     }
-    int sum = 0;
-    for (Object score: scores){
-      sum += (int)score;
+    if (count == 0){
+      return 0;
     }
-    return (float)sum/size;
+    return (float) sum / count;
   }
 
 }
@@ -0,0 +1,41 @@
+package com.google;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the videos of a library in title order without copying them into a list. The
+ * cursor reads the live title order, it must not be used across changes to the library.
+ */
+class VideoCursor implements Iterator<Video> {
+
+  private final VideoLibrary library;
+  private final TitleOrder order;
+  private final int end;
+  private int position;
+
+  VideoCursor(VideoLibrary library, TitleOrder order, int position, int end) {
+    this.library = library;
+    this.order = order;
+    this.position = position;
+    this.end = Math.min(end, order.size());
+  }
+
+  /** Position in the title order of the video returned by the next call to {@link #next}. */
+  int position() {
+    return position;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return position < end;
+  }
+
+  @Override
+  public Video next() {
+    if (position >= end) {
+      throw new NoSuchElementException();
+    }
+    return library.video(order.ordinalAt(position++));
+  }
+}
@@ -2,65 +2,658 @@ package com.google;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
  * A class used to represent a Video Library.
+ *
+ * <p>Reading the library is safe from any thread, the views built on first use are built
+ * under the library lock. Adding and removing videos is locked too but not isolated from
+ * concurrent readers, so a library shared by many sessions through a {@link PlayerEngine} is
+ * not changed while they run.
  */
 class VideoLibrary {
 
-  private final HashMap<String, Video> videos;
+  /** Ways of reading the catalog file. */
+  enum Loader {
+    /** Line by line through a Scanner and regex splits, the original loader. */
+    SCANNER,
+    /** Memory-mapped file parsed by {@link CatalogParser} in a single pass. */
+    MAPPED,
+    /** Memory-mapped file cut into line aligned shards parsed on the common fork-join pool. */
+    PARALLEL,
+    /**
+     * Binary {@link CatalogSnapshot} next to the catalog, videos are built lazily. A missing,
+     * damaged or stale snapshot is rebuilt from the text catalog.
+     */
+    SNAPSHOT,
+    /**
+     * Memory-mapped file parsed into a {@link ColumnStore}, videos are views built lazily.
+     * Uses a fraction of the memory of the other loaders.
+     */
+    COLUMNS,
+    /**
+     * Like COLUMNS with the columns in direct buffers outside of the heap, so a large catalog
+     * adds next to nothing to garbage collection pauses.
+     */
+    OFF_HEAP;
+
+    /** Loader chosen by the {@code youtube.catalog.loader} system property, MAPPED by default. */
+    static Loader fromProperty() {
+      String name = System.getProperty("youtube.catalog.loader", MAPPED.name());
+      return Loader.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /** Longest random picks go on choosing from a pool that missed a change of the library. */
+  static final long PICKS_MAX_AGE_MILLIS = 1000;
+
+  //videos added after the title index was built are scanned until there are this many
+  private static final int MIN_TITLE_DELTA = 1024;
+  //a pick landing on a video flagged or removed since the picks were built is drawn again,
+  //this many times before the picks are rebuilt on the spot
+  private static final int PICK_ATTEMPTS = 8;
+  private static final int FLAG_LOCK_STRIPES = 64;
+
+  //concurrent so ids can be resolved by other threads while videos are built or changed
+  private final ConcurrentHashMap<String, Video> videos;
+  //videos by ordinal, ordinals below count were handed out and never reused
+  private Video[] ordered;
+  private int count;
+  private final BitSet removed = new BitSet();
+  private int live;
+  private CatalogLoadStats loadStats;
+  //set when the catalog is served from a snapshot or columns, ordered is then filled on
+  //first access unless the store keeps flags and ratings itself
+  private CatalogStore store;
+  //stripes locked while a flag is checked and changed, any video of an ordinal maps to one
+  private final Object[] flagLocks = new Object[FLAG_LOCK_STRIPES];
+  //views below are built on first use, then kept up to date by addVideo and removeVideo
+  private TagIndex tagIndex;
+  private TitleOrder titleOrder;
+  private TitleIndex titleIndex;
+  private int[] titleDelta = new int[16];
+  private int titleDeltaSize;
+  //videos a random pick may land on, those not flagged, kept up to date under the lock
+  private RandomPool randomPool;
+  //copy of the pool random picks read without the lock, replaced when out of date
+  private final AtomicReference<RandomPicks> picks = new AtomicReference<>();
+  private final AtomicBoolean rebuildingPicks = new AtomicBoolean();
+  //adds, removes, flag changes and ratings so far, picks know the count they were built at
+  private final AtomicLong changes = new AtomicLong();
 
   VideoLibrary() {
-    this.videos = new HashMap<>();
+    this(Loader.fromProperty());
+  }
+
+  VideoLibrary(Loader loader) {
+    this(defaultCatalog(), loader);
+  }
+
+  /** Loads the catalog at the given path, a null path behaves like a missing file. */
+  VideoLibrary(Path catalog, Loader loader) {
+    this.videos = new ConcurrentHashMap<>();
+    for (int i = 0; i < FLAG_LOCK_STRIPES; i++) {
+      this.flagLocks[i] = new Object();
+    }
+    long start = System.nanoTime();
     try {
-      File file = new File(this.getClass().getResource("/videos.txt").getFile());
+      if (catalog == null) {
+        throw new FileNotFoundException("videos.txt");
+      }
+      long rows;
+      if (loader == Loader.SCANNER) {
+        rows = this.scan(catalog.toFile());
+      } else if (loader == Loader.PARALLEL) {
+        rows = this.shard(catalog);
+      } else if (loader == Loader.SNAPSHOT) {
+        rows = this.snapshot(catalog, snapshotPath(catalog));
+      } else if (loader == Loader.COLUMNS || loader == Loader.OFF_HEAP) {
+        rows = this.columns(catalog, loader == Loader.OFF_HEAP);
+      } else {
+        rows = this.map(catalog);
+      }
+      this.loadStats = new CatalogLoadStats(loader.name(), rows, catalog.toFile().length(),
+          System.nanoTime() - start);
+      if (Boolean.getBoolean("youtube.catalog.stats")) {
+        System.err.println(this.loadStats);
+      }
+    } catch (FileNotFoundException | NoSuchFileException e) {
+      System.out.println("Couldn't find videos.txt");
+      e.printStackTrace();
+    } catch (IOException e) {
+      System.out.println("Couldn't read videos.txt");
+      e.printStackTrace();
+    }
+    if (this.ordered == null) {
+      this.ordered = this.videos.values().toArray(new Video[0]);
+      for (int ordinal = 0; ordinal < this.ordered.length; ordinal++) {
+        this.ordered[ordinal].setOrdinal(ordinal);
+      }
+    }
+    this.count = this.ordered.length;
+    this.live = this.count - this.removed.cardinality();
+  }
 
-      Scanner scanner = new Scanner(file);
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        if (line == ""){
-          continue;
+  /** Location of the bundled videos.txt, or null if it is not a plain file. */
+  static Path defaultCatalog() {
+    URL resource = VideoLibrary.class.getResource("/videos.txt");
+    if (resource == null || !"file".equals(resource.getProtocol())) {
+      return null;
+    }
+    try {
+      return Paths.get(resource.toURI());
+    } catch (URISyntaxException e) {
+      return new File(resource.getFile()).toPath();
+    }
+  }
+
+  private long scan(File file) throws FileNotFoundException {
+    long rows = 0;
+    Scanner scanner = new Scanner(file);
+    while (scanner.hasNextLine()) {
+      String line = scanner.nextLine();
+      if (line.isEmpty()){
+        continue;
+      }
+      String[] split = line.split("\\|");
+      String title = split[0].strip();
+      String id = split[1].strip();
+
+      String url;
+      if (split.length > 3){
+        url = split[3].strip();
+      } else {
+        url = "";
+      }
+
+      List<String> tags;
+      if (split.length > 2) {
+        tags = Arrays.stream(split[2].split(",")).map(String::strip).collect(
+            Collectors.toList());
+      } else {
+        tags = new ArrayList<>();
+      }
+      this.videos.put(id, new FieldVideo(title, id, tags, url));
+      rows++;
+    }
+    return rows;
+  }
+
+  private long map(Path catalog) throws IOException {
+    CatalogParser parser = new CatalogParser(
+        (title, id, tags, url) -> this.videos.put(id, new FieldVideo(title, id, tags, url)));
+    try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ)) {
+      parser.parse(channel, 0, channel.size());
+    }
+    return parser.rows();
+  }
+
+  private long shard(Path catalog) throws IOException {
+    ParallelCatalogLoader loader = new ParallelCatalogLoader(ForkJoinPool.commonPool());
+    loader.load(catalog, video -> this.videos.put(video.getVideoId(), video));
+    return loader.rows();
+  }
+
+  private long snapshot(Path catalog, Path snapshotFile) throws IOException {
+    if (Files.exists(snapshotFile)) {
+      try {
+        CatalogSnapshot existing = CatalogSnapshot.open(snapshotFile);
+        if (existing.isCurrent(catalog)) {
+          this.store = existing;
+          this.ordered = new Video[existing.size()];
+          return existing.size();
         }
-        String[] split = line.split("\\|");
-        String title = split[0].strip();
-        String id = split[1].strip();
-
-        String url;
-        if (split.length > 3){
-          url = split[3].strip();
-        } else {
-          url = "";
+      } catch (IOException e) {
+        //damaged or from another version, rebuilt below
+      }
+    }
+    long rows = this.map(catalog);
+    try {
+      CatalogSnapshot.write(snapshotFile, this.videos.values(), catalog);
+    } catch (IOException e) {
+      System.err.println("Couldn't write catalog snapshot " + snapshotFile + ": " + e.getMessage());
+    }
+    return rows;
+  }
+
+  private long columns(Path catalog, boolean offHeap) throws IOException {
+    ColumnStore columns = ColumnStore.load(catalog, offHeap);
+    this.store = columns;
+    this.ordered = new Video[columns.size()];
+    //a later row with the same id replaces the video, like in the other loaders
+    this.removed.or(columns.superseded());
+    return columns.catalogRows();
+  }
+
+  /** Snapshot file used for a catalog, {@code youtube.catalog.snapshot} or a sibling file. */
+  static Path snapshotPath(Path catalog) {
+    String configured = System.getProperty("youtube.catalog.snapshot");
+    if (configured != null) {
+      return Paths.get(configured);
+    }
+    return catalog.resolveSibling(catalog.getFileName() + ".snapshot");
+  }
+
+  /**
+   * Video at an ordinal, null if it was removed. Built on first use when served from a
+   * store, ids of the store are resolved by the store. A store keeping its own state builds
+   * a new view on every call.
+   */
+  Video video(int ordinal) {
+    Video video = this.ordered[ordinal];
+    if (video == null && this.store != null) {
+      video = this.store.keepsState() ? this.view(ordinal) : this.materialize(ordinal);
+    }
+    return video;
+  }
+
+  //not locked, searches read removed the same way
+  private Video view(int ordinal) {
+    return this.removed.get(ordinal) ? null : this.store.video(ordinal);
+  }
+
+  //the video of a kept ordinal, or a view when the store keeps state; null for a video of
+  //another store that was never built, which has neither a flag nor ratings
+  private Video stateOf(Video[] videos, int ordinal) {
+    Video video = videos[ordinal];
+    if (video == null && this.store != null && this.store.keepsState()) {
+      video = this.store.video(ordinal);
+    }
+    return video;
+  }
+
+  /** Lock to hold while checking and changing the flag of the video, one for all its views. */
+  Object flagLock(Video video) {
+    return this.flagLocks[video.getOrdinal() & (FLAG_LOCK_STRIPES - 1)];
+  }
+
+  //locked so two threads never build different copies of the same video
+  private synchronized Video materialize(int ordinal) {
+    Video video = this.ordered[ordinal];
+    if (video == null && !this.removed.get(ordinal)) {
+      video = this.store.video(ordinal);
+      video.setOrdinal(ordinal);
+      this.ordered[ordinal] = video;
+    }
+    return video;
+  }
+
+  /** Number of videos in the library. */
+  int size() {
+    return this.live;
+  }
+
+  /** Figures of the last catalog load, null if the catalog could not be read. */
+  CatalogLoadStats getLoadStats() {
+    return this.loadStats;
+  }
+
+  /**
+   * Adds a video to the library and every view built so far. A video with the same id is
+   * replaced, like a later row of the catalog file.
+   */
+  synchronized Video addVideo(String title, String videoId, List<String> tags, String url) {
+    this.removeVideo(videoId);
+    Video video = new FieldVideo(title, videoId, tags, url);
+    int ordinal = this.count++;
+    if (ordinal == this.ordered.length) {
+      this.ordered = Arrays.copyOf(this.ordered, Math.max(16, ordinal * 2));
+    }
+    this.ordered[ordinal] = video;
+    video.setOrdinal(ordinal);
+    this.videos.put(videoId, video);
+    this.live++;
+
+    if (this.tagIndex != null) {
+      this.tagIndex.add(ordinal, video.getTags());
+    }
+    if (this.titleOrder != null) {
+      this.titleOrder.add(ordinal);
+    }
+    if (this.randomPool != null) {
+      this.randomPool.add(ordinal);
+    }
+    this.changes.incrementAndGet();
+    if (this.titleIndex != null) {
+      if (this.titleDeltaSize >= Math.max(MIN_TITLE_DELTA, this.live / 64)) {
+        //cheaper to rebuild the index on the next search than to keep scanning
+        this.titleIndex = null;
+        this.titleDeltaSize = 0;
+      } else {
+        if (this.titleDeltaSize == this.titleDelta.length) {
+          this.titleDelta = Arrays.copyOf(this.titleDelta, this.titleDeltaSize * 2);
         }
+        this.titleDelta[this.titleDeltaSize++] = ordinal;
+      }
+    }
+    return video;
+  }
+
+  /** Removes the video with the id from the library and every view, returns it or null. */
+  synchronized Video removeVideo(String videoId) {
+    Video video = this.getVideo(videoId);
+    if (video == null) {
+      return null;
+    }
+    int ordinal = video.getOrdinal();
+    if (this.tagIndex != null) {
+      this.tagIndex.remove(ordinal, video.getTags());
+    }
+    if (this.titleOrder != null) {
+      this.titleOrder.remove(ordinal);
+    }
+    if (this.randomPool != null) {
+      this.randomPool.remove(ordinal);
+    }
+    this.changes.incrementAndGet();
+    //the title index keeps the ordinal until it is rebuilt, searches skip removed ordinals
+    this.removed.set(ordinal);
+    this.ordered[ordinal] = null;
+    this.videos.remove(videoId);
+    this.live--;
+    return video;
+  }
 
-        List<String> tags;
-        if (split.length > 2) {
-          tags = Arrays.stream(split[2].split(",")).map(String::strip).collect(
-              Collectors.toList());
-        } else {
-          tags = new ArrayList<>();
+  /**
+   * Flags or allows a video of the library. Flags are changed here rather than on the video so
+   * the videos random picks choose from stay in step.
+   */
+  synchronized void setFlag(Video video, boolean flag) {
+    video.setFlag(flag);
+    if (this.randomPool != null && !this.removed.get(video.getOrdinal())) {
+      if (flag) {
+        this.randomPool.remove(video.getOrdinal());
+      } else {
+        this.randomPool.add(video.getOrdinal());
+      }
+    }
+    this.changes.incrementAndGet();
+  }
+
+  /**
+   * Tells the library ratings were added, after adding them. Random picks by rating follow
+   * them within {@link #PICKS_MAX_AGE_MILLIS}.
+   */
+  void ratingsChanged() {
+    this.changes.incrementAndGet();
+  }
+
+  /**
+   * A video that is not flagged, each equally likely, null if there is none. Constant time
+   * without locking or allocating; a video added or allowed shows up in picks within
+   * {@link #PICKS_MAX_AGE_MILLIS}, one flagged or removed is never picked.
+   */
+  Video randomVideo(SplittableRandom random) {
+    return this.pick(random, false);
+  }
+
+  /**
+   * A video that is not flagged, chosen with chances in proportion to its average rating,
+   * null if there is none. Videos never rated weigh as much as a one star video. Constant time
+   * like {@link #randomVideo}, with weights at most {@link #PICKS_MAX_AGE_MILLIS} old.
+   */
+  Video randomRatedVideo(SplittableRandom random) {
+    return this.pick(random, true);
+  }
+
+  /** Builds the picks now rather than when they are next due, e.g. to see every rating. */
+  void refreshRandomPicks() {
+    RandomPicks current = this.picks.get();
+    this.buildPicks(current != null && current.isRated());
+  }
+
+  private Video pick(SplittableRandom random, boolean byRating) {
+    RandomPicks current = this.picks.get();
+    if (current == null || byRating && !current.isRated()) {
+      //once, the first pick of its kind builds the picks itself
+      current = this.buildPicks(byRating);
+    } else if (current.version() != this.changes.get()
+        && System.nanoTime() - current.builtNanos() >= PICKS_MAX_AGE_MILLIS * 1_000_000
+        && this.rebuildingPicks.compareAndSet(false, true)) {
+      boolean rated = current.isRated();
+      ForkJoinPool.commonPool().execute(() -> {
+        try {
+          this.buildPicks(rated);
+        } finally {
+          this.rebuildingPicks.set(false);
+        }
+      });
+    }
+    while (true) {
+      for (int attempt = 0; attempt < PICK_ATTEMPTS; attempt++) {
+        int ordinal = current.pick(random, byRating);
+        if (ordinal < 0) {
+          break;
+        }
+        Video video = this.video(ordinal);
+        if (video != null && !video.isFlag()) {
+          return video;
         }
-        this.videos.put(id, new Video(title, id, tags, url));
       }
-    } catch (FileNotFoundException e) {
-      System.out.println("Couldn't find videos.txt");
-      e.printStackTrace();
+      if (current.version() == this.changes.get()) {
+        return null;
+      }
+      //the picks missed changes, they may know of no video that can be picked now
+      current = this.buildPicks(byRating);
     }
   }
 
+  //copies the pool under the lock, weighs it outside of it and publishes it unless newer
+  //picks were published meanwhile; the caller picks from what it built either way
+  private RandomPicks buildPicks(boolean byRating) {
+    long version;
+    int[] ordinals;
+    Video[] videos;
+    synchronized (this) {
+      version = this.changes.get();
+      ordinals = this.randomPool().toArray();
+      videos = this.ordered;
+    }
+    AliasTable rated = null;
+    if (byRating) {
+      double[] weights = new double[ordinals.length];
+      for (int i = 0; i < ordinals.length; i++) {
+        Video video = this.stateOf(videos, ordinals[i]);
+        weights[i] = video == null ? 1 : Math.max(1, video.averageScore());
+      }
+      rated = new AliasTable(ordinals, weights, ordinals.length);
+    }
+    RandomPicks built = new RandomPicks(ordinals, rated, version, System.nanoTime());
+    this.picks.accumulateAndGet(built, (published, fresh) ->
+        published == null || fresh.version() >= published.version() ? fresh : published);
+    return built;
+  }
+
+  private synchronized RandomPool randomPool() {
+    if (this.randomPool == null) {
+      RandomPool pool = new RandomPool();
+      for (int ordinal = 0; ordinal < this.count; ordinal++) {
+        Video video = this.stateOf(this.ordered, ordinal);
+        if (!this.removed.get(ordinal) && (video == null || !video.isFlag())) {
+          pool.add(ordinal);
+        }
+      }
+      this.randomPool = pool;
+    }
+    return this.randomPool;
+  }
+
+  /** Videos in ordinal order. */
   List<Video> getVideos() {
-    return new ArrayList<>(this.videos.values());
+    List<Video> all = new ArrayList<>(this.live);
+    for (int ordinal = 0; ordinal < this.count; ordinal++) {
+      Video video = this.video(ordinal);
+      if (video != null) {
+        all.add(video);
+      }
+    }
+    return all;
+  }
+
+  /** All videos sorted by title, a walk over the maintained title order. */
+  List<Video> getVideosByTitle() {
+    return this.getVideosByTitle(0, Integer.MAX_VALUE);
+  }
+
+  /** Up to {@code limit} videos in title order, starting at position {@code offset}. */
+  List<Video> getVideosByTitle(int offset, int limit) {
+    List<Video> page = new ArrayList<>(Math.min(limit, Math.max(0, this.live - offset)));
+    this.cursorByTitle(offset, limit).forEachRemaining(page::add);
+    return page;
+  }
+
+  /**
+   * Streams up to {@code limit} videos in title order, starting at position {@code offset},
+   * without building a list. Seeking to the offset is constant time.
+   */
+  VideoCursor cursorByTitle(int offset, int limit) {
+    TitleOrder order = this.titleOrder();
+    int start = Math.max(0, Math.min(offset, order.size()));
+    return new VideoCursor(this, order, start, (int) Math.min(order.size(), (long) start + limit));
+  }
+
+  private synchronized TitleOrder titleOrder() {
+    if (this.titleOrder == null) {
+      int[] ascending = new int[this.live];
+      int n = 0;
+      for (int ordinal = 0; ordinal < this.count; ordinal++) {
+        if (!this.removed.get(ordinal)) {
+          ascending[n++] = ordinal;
+        }
+      }
+      this.titleOrder = new TitleOrder(ascending, n, this::title);
+    }
+    return this.titleOrder;
+  }
+
+  //rows of a store are read in place, so scans over titles build no videos
+  private String title(int ordinal) {
+    Video video = this.ordered[ordinal];
+    return video != null ? video.getTitle() : this.store.title(ordinal);
+  }
+
+  /**
+   * Videos whose title contains the term, ignoring case, sorted by title with flagged ones
+   * included. The trigram index is built on the first search.
+   */
+  List<Video> searchTitles(String term) {
+    int[] ordinals = this.titleIndex().search(term);
+    List<Video> matches = new ArrayList<>(ordinals.length);
+    for (int ordinal : ordinals) {
+      if (!this.removed.get(ordinal)) {
+        matches.add(this.video(ordinal));
+      }
+    }
+    if (this.titleDeltaSize == 0) {
+      return matches;
+    }
+
+    //videos added since the index was built
+    String needle = TitleIndex.normalize(term);
+    List<Video> added = new ArrayList<>();
+    for (int i = 0; i < this.titleDeltaSize; i++) {
+      int ordinal = this.titleDelta[i];
+      if (!this.removed.get(ordinal)
+          && TitleIndex.normalize(this.title(ordinal)).contains(needle)) {
+        added.add(this.video(ordinal));
+      }
+    }
+    added.sort(TitleOrder.BY_TITLE);
+    return merge(matches, added);
+  }
+
+  private synchronized TitleIndex titleIndex() {
+    if (this.titleIndex == null) {
+      this.titleIndex = new TitleIndex(this.titleOrder().toArray(), this::title);
+      this.titleDeltaSize = 0;
+    }
+    return this.titleIndex;
+  }
+
+  private static List<Video> merge(List<Video> first, List<Video> second) {
+    List<Video> merged = new ArrayList<>(first.size() + second.size());
+    int i = 0;
+    int j = 0;
+    while (i < first.size() || j < second.size()) {
+      if (j == second.size()
+          || (i < first.size() && TitleOrder.BY_TITLE.compare(first.get(i), second.get(j)) <= 0)) {
+        merged.add(first.get(i++));
+      } else {
+        merged.add(second.get(j++));
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Videos carrying the tag, ignoring case, sorted by title with flagged ones included. The
+   * tag index is built on the first call and is not affected by flagging, callers check the
+   * flag of each match.
+   */
+  List<Video> getVideosWithTag(String tag) {
+    int[] ordinals = this.withTag(tag);
+    List<Video> matches = new ArrayList<>(ordinals.length);
+    for (int ordinal : ordinals) {
+      matches.add(this.video(ordinal));
+    }
+    return matches;
+  }
+
+  //ordinals carrying the tag in title order, found and sorted in one step so none is removed
+  //in between
+  private synchronized int[] withTag(String tag) {
+    return this.titleOrder().sort(this.tagIndex().find(tag));
+  }
+
+  private synchronized TagIndex tagIndex() {
+    if (this.tagIndex == null) {
+      TagIndex index = new TagIndex();
+      for (int ordinal = 0; ordinal < this.count; ordinal++) {
+        Video video = this.ordered[ordinal];
+        if (video != null) {
+          index.add(ordinal, video.getTags());
+        } else if (this.store != null && !this.removed.get(ordinal)) {
+          index.add(ordinal, this.store.tags(ordinal));
+        }
+      }
+      this.tagIndex = index;
+    }
+    return this.tagIndex;
   }
 
   /**
    * Get a video by id. Returns null if the video is not found.
    */
   Video getVideo(String videoId) {
-    return this.videos.get(videoId);
+    Video video = this.videos.get(videoId);
+    if (video == null && this.store != null) {
+      int ordinal = this.store.find(videoId);
+      if (ordinal >= 0) {
+        video = this.video(ordinal);
+      }
+    }
+    return video;
   }
 }
@@ -1,156 +1,261 @@
 package com.google;
 
-import org.apache.maven.shared.utils.StringUtils;
-
+import java.nio.charset.Charset;
 import java.util.*;
 
+/**
+ * One user session: what is playing and the commands of the user. The library, playlists and
+ * ratings live in the {@link PlayerEngine} shared by all sessions.
+ */
 public class VideoPlayer {
 
+  //random picks of every session on a thread share one generator, none of them allocates
+  private static final ThreadLocal<SplittableRandom> RANDOM =
+      ThreadLocal.withInitial(SplittableRandom::new);
+
+  private final PlayerEngine engine;
   private final VideoLibrary videoLibrary;
+  //session state, only touched by the thread driving this session
   private Video videoPlaying;
   private String playlistPlaying;
   private int currentVideoNum;
   private boolean paused;
-  private HashMap<String, List<Video>> playLists;
+  //playlists of the session user, shared with other sessions of the same user; changes to
+  //them lock it, so they reach the log in the order they were made
+  private final String user;
+  private final PlaylistRegistry playLists;
+  //where changes are saved, and the position after the last one this session made
+  private final MutationLog log;
+  private long logged;
+  //reused by every listing, so its buffer is allocated once
+  private final StringBuilder row = new StringBuilder();
+  //where the session writes, where answers to its questions come from and how it opens videos
+  private final OutputSink out;
+  private final PromptPolicy prompts;
+  private final BrowserLauncher browser;
 
   public VideoPlayer() {
-    this.videoLibrary = new VideoLibrary();
-    this.playLists = new HashMap<>();
+    this(new VideoLibrary());
+  }
+
+  /** Single session player over a given library, e.g. a generated catalog. */
+  VideoPlayer(VideoLibrary videoLibrary) {
+    this(new PlayerEngine(videoLibrary), PlayerEngine.DEFAULT_USER);
+  }
+
+  /** Console session of a user on a shared engine, see {@link PlayerEngine#openSession}. */
+  VideoPlayer(PlayerEngine engine, String user) {
+    this(engine, user, new BufferedSink(System.out, Charset.defaultCharset()));
+  }
+
+  private VideoPlayer(PlayerEngine engine, String user, OutputSink console) {
+    this(engine, user, console, PromptPolicy.reading(console, VideoPlayer::readConsoleAnswer),
+        BrowserLauncher.system());
+  }
+
+  /**
+   * Session of a user on a shared engine writing to {@code out}, which is flushed after every
+   * command by the {@link CommandParser}. Questions to the user, like whether to play a search
+   * result, are answered by {@code prompts}, and playing a video hands its URL to
+   * {@code browser}, which should not wait for the browser to start.
+   */
+  VideoPlayer(PlayerEngine engine, String user, OutputSink out, PromptPolicy prompts,
+      BrowserLauncher browser) {
+    this.engine = engine;
+    this.videoLibrary = engine.getLibrary();
+    this.user = user;
+    this.playLists = engine.getPlaylists().forUser(user);
+    this.log = engine.getLog();
     this.currentVideoNum = 0;
+    this.out = out;
+    this.prompts = prompts;
+    this.browser = browser;
+  }
+
+  /** Next word typed on the console, read the way the questions always were. */
+  static String readConsoleAnswer() {
+    return new Scanner(System.in).next();
+  }
+
+  /** Sink the session writes to, commands print their results here. */
+  OutputSink getOutput() {
+    return out;
+  }
+
+  /** Entry point for ratings arriving from other threads, e.g. event consumers. */
+  RatingIngestor getRatingIngestor() {
+    return engine.getRatingIngestor();
+  }
+
+  /** Waits until the changes of the session are saved as the log promises, see {@link MutationLog#commit}. */
+  void commit() {
+    log.commit(logged);
   }
 
   public void numberOfVideos() {
-    System.out.printf("%s videos in the library%n", videoLibrary.getVideos().size());
+    out.printf("%s videos in the library%n", videoLibrary.size());
   }
 
   public String getVideoInfo(Video video){
-    String output = video.getTitle() + " (" + video.getVideoId() + ") [";
-    output  = output.concat(StringUtils.join(video.getTags().toArray(), " "));
-    float score = video.averageScore();
-    if (score == 0){
-      output = output.concat("] ");
-      return output;
-    }
-    output = output.concat("] " + video.averageScore());
-    return output;
+    StringBuilder output = new StringBuilder();
+    this.appendVideoInfo(output, video);
+    return output.toString();
   }
 
-  public List<Video> sortVideos(List<Video> videos){
-    Collections.sort(videos, new Comparator<Video>() {
-      @Override
-      public int compare(Video o1, Video o2) {
-        //compare in lexicographical order
-        return o1.getTitle().compareTo(o2.getTitle());
+  /** Appends the same text as getVideoInfo, without building intermediate strings. */
+  void appendVideoInfo(StringBuilder output, Video video){
+    output.append(video.getTitle()).append(" (").append(video.getVideoId()).append(") [");
+    List<String> tags = video.getTags();
+    for (int i = 0; i < tags.size(); i++){
+      if (i > 0){
+        output.append(' ');
       }
-    });
-    return videos;
+      output.append(tags.get(i));
+    }
+    output.append("] ");
+    float score = video.averageScore();
+    if (score != 0){
+      output.append(score);
+    }
   }
 
   public void showAllVideos() {
-    List<Video> videos= videoLibrary.getVideos();
-    videos = this.sortVideos(videos);
-    System.out.println("Here's a list of all available videos:");
-    for(Video video: videos){
+    out.println("Here's a list of all available videos:");
+    //stream the title order of the library, the sink writes long listings in chunks
+    this.writeVideoRows(videoLibrary.cursorByTitle(0, Integer.MAX_VALUE));
+  }
+
+  /** Shows one page of the library in title order, pages are numbered from 1. */
+  public void showAllVideos(int page, int pageSize) {
+    String errorMessage = "Cannot show videos: ";
+    if (page < 1 || pageSize < 1){
+      out.println(errorMessage + "Page and page size should be positive integers");
+      return;
+    }
+    int total = videoLibrary.size();
+    int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+    if (page > pages){
+      out.println(errorMessage + "Page " + page + " does not exist, there are " + pages + " pages");
+      return;
+    }
+    out.println("Here's page " + page + " of " + pages + " of all available videos:");
+    this.writeVideoRows(videoLibrary.cursorByTitle((int) Math.min(Integer.MAX_VALUE,
+        (long) (page - 1) * pageSize), pageSize));
+  }
+
+  private void writeVideoRows(Iterator<Video> videos) {
+    while (videos.hasNext()){
+      Video video = videos.next();
+      row.setLength(0);
+      this.appendVideoInfo(row, video);
       if (video.isFlag()){
-        System.out.println(this.getVideoInfo(video) + " - FLAGGED (reason: " + video.getFlagReason() + ")");
-      }else {
-        System.out.println(this.getVideoInfo(video));
+        row.append(" - FLAGGED (reason: ").append(video.getFlagReason()).append(')');
       }
+      out.println(row);
     }
   }
 
-  public void playVideo(String videoId) {
+  public boolean playVideo(String videoId) {
     //what to do when video does not exist
     String errorMessage = "Cannot play video: ";
     if (videoLibrary.getVideo(videoId) == null) {
-      System.out.println(errorMessage + "Video does not exist");
-      return;
+      out.println(errorMessage + "Video does not exist");
+      return false;
     }
     Video video = videoLibrary.getVideo(videoId);
     if(video.isFlag()){
-      System.out.println(errorMessage + "Video is currently flagged (reason: " + video.getFlagReason() + ")");
-      return;
+      out.println(errorMessage + "Video is currently flagged (reason: " + video.getFlagReason() + ")");
+      return false;
     }
 
     if (this.videoPlaying != null) {
-      System.out.println("Stopping video: " + videoPlaying.getTitle());
+      out.println("Stopping video: " + videoPlaying.getTitle());
     }
     this.videoPlaying = video;
     this.paused = false;
-    System.out.println("Playing video: " + videoPlaying.getTitle());
+    out.println("Playing video: " + videoPlaying.getTitle());
     try {
-      BrowserLaunch.openURL(video.getURL());
+      browser.open(video.getURL());
     } catch (Exception e){
-      System.out.println("Cannot open URL: either because there is no URL available or cannot find a browser");
+      out.println("Cannot open URL: either because there is no URL available or cannot find a browser");
     }
+    return true;
+  }
+
+  //views of the same video are different objects when the library serves them from columns
+  private boolean isPlaying(Video video) {
+    return videoPlaying != null && videoPlaying.getOrdinal() == video.getOrdinal();
+  }
+
+  /** video_id of the video playing, null if none **/
+  String getPlayingVideoId() {
+    return videoPlaying == null ? null : videoPlaying.getVideoId();
   }
 
   /** Stop a video and return its video_id **/
   public String stopVideo() {
     if(this.videoPlaying == null){
-      System.out.println("Cannot stop video: No video is currently playing");
+      out.println("Cannot stop video: No video is currently playing");
       return "";
     }
     String videoId = videoPlaying.getVideoId();
-    System.out.println("Stopping video: " + videoPlaying.getTitle());
+    out.println("Stopping video: " + videoPlaying.getTitle());
     this.videoPlaying = null;
     this.paused = false;
     return videoId;
   }
 
-  public void playRandomVideo() {
-    //remove flagged videos
-    List<Video> notFlaggedVideos = new ArrayList<>();
-    for (Video video: videoLibrary.getVideos()){
-      if(!video.isFlag()){
-        notFlaggedVideos.add(video);
-      }
-    }
+  public boolean playRandomVideo() {
+    return this.playRandomVideo(false);
+  }
 
-    int size = notFlaggedVideos.size();
-    if (size == 0){
-      System.out.println("No videos available");
-      return;
+  /**
+   * Plays a video that is not flagged, picked at random from the pool the library keeps, with
+   * chances in proportion to average rating when {@code byRating} is set.
+   */
+  public boolean playRandomVideo(boolean byRating) {
+    SplittableRandom random = RANDOM.get();
+    Video video = byRating ? videoLibrary.randomRatedVideo(random) : videoLibrary.randomVideo(random);
+    if (video == null){
+      out.println("No videos available");
+      return false;
     }
-
-
-    Random random = new Random();
-    int randomNum = random.nextInt(size);
-    Video video = notFlaggedVideos.get(randomNum);
-    this.playVideo(video.getVideoId());
+    return this.playVideo(video.getVideoId());
   }
 
-  public void pauseVideo() {
+  public boolean pauseVideo() {
     if(this.videoPlaying == null){
-      System.out.println("Cannot pause video: No video is currently playing");
-      return;
+      out.println("Cannot pause video: No video is currently playing");
+      return false;
     }
 
-    if (this.paused) System.out.println("Video already paused: " + videoPlaying.getTitle());
-    else{
-      System.out.println("Pausing video: " + videoPlaying.getTitle());
-      this.paused = true;
+    if (this.paused) {
+      out.println("Video already paused: " + videoPlaying.getTitle());
+      return false;
     }
-
+    out.println("Pausing video: " + videoPlaying.getTitle());
+    this.paused = true;
+    return true;
   }
 
-  public void continueVideo() {
+  public boolean continueVideo() {
     if(this.videoPlaying == null){
-      System.out.println("Cannot continue video: No video is currently playing");
-      return;
+      out.println("Cannot continue video: No video is currently playing");
+      return false;
     }
 
-    if (this.paused) {
-      this.paused = false;
-      System.out.println("Continuing video: " + videoPlaying.getTitle());
-    }else{
-      System.out.println("Cannot continue video: Video is not paused");
+    if (!this.paused) {
+      out.println("Cannot continue video: Video is not paused");
+      return false;
     }
+    this.paused = false;
+    out.println("Continuing video: " + videoPlaying.getTitle());
+    return true;
   }
 
   public void showPlaying() {
     if (videoPlaying == null){
-      System.out.println("No video is currently playing");
+      out.println("No video is currently playing");
       return;
     }
 
@@ -158,7 +263,7 @@ public class VideoPlayer {
     if (paused){
       output = output.concat(" - PAUSED");
     }
-    System.out.println(output);
+    out.println(output);
   }
 
 
@@ -167,331 +272,354 @@ public class VideoPlayer {
 
   //used to test if a playlist name already exist
   public boolean nameExists(String name){
-    name = name.toLowerCase(Locale.ROOT);
-    boolean flag = false;
-    try{
-      //noinspection ResultOfMethodCallIgnored
-      playLists.keySet();
-    }catch (Exception e){
-      return false;
-    }
-    for (String playlistName : playLists.keySet()) {
-      if (playlistName.toLowerCase(Locale.ROOT).equals(name)) {
-        flag = true;
-        break;
-      }
-    }
-    return flag;
+    return playLists.contains(name);
   }
 
   //ask if the user want to create a new playlist
   public void userCreatePlayListAsk(String name){
-    Scanner scanner = new Scanner(System.in);
-    System.out.println("Do you want to create a new playlist with name: " + name + "?");
-    System.out.println("Type \"yes\" to create, anything else to cancel.");
-    String input = scanner.next();
-    if (input.toLowerCase(Locale.ROOT).equals("yes")){
+    out.println("Do you want to create a new playlist with name: " + name + "?");
+    out.println("Type \"yes\" to create, anything else to cancel.");
+    if (prompts.confirm()){
       this.createPlaylist(name);
     }
   }
 
-  public void createPlaylist(String playlistName) {
-    //test if playlistName exists up to lowercase
-    if(nameExists(playlistName)){
-      System.out.println("Cannot create playlist: A playlist with the same name already exists");
-      return;
+  public boolean createPlaylist(String playlistName) {
+    if (!MutationLog.fits(playlistName)){
+      out.println("Cannot create playlist: Playlist name is too long");
+      return false;
     }
-
-    playLists.put(playlistName, new ArrayList<>());
-    System.out.println("Successfully created new playlist: " + playlistName);
+    synchronized (playLists) {
+      //fails if playlistName exists up to lowercase
+      if (!playLists.create(playlistName)){
+        out.println("Cannot create playlist: A playlist with the same name already exists");
+        return false;
+      }
+      this.logged = log.createPlaylist(user, playlistName);
+    }
+    out.println("Successfully created new playlist: " + playlistName);
+    return true;
   }
 
-  public void addVideoToPlaylist(String playlistName, String videoId) {
+  public boolean addVideoToPlaylist(String playlistName, String videoId) {
     //Basic errors
     String errorMessage = "Cannot add video to " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
       userCreatePlayListAsk(playlistName);
-      return;
+      return false;
     }
     if (videoLibrary.getVideo(videoId) == null){
-      System.out.println(errorMessage + "Video does not exist");
-      return;
+      out.println(errorMessage + "Video does not exist");
+      return false;
     }
 
-    //take out the list, add video and put back
-
-    List<Video> videos = playLists.get(actualName);
     Video newVideo = videoLibrary.getVideo(videoId);
     if(newVideo.isFlag()){
-      System.out.println(errorMessage + "Video is currently flagged (reason: " + newVideo.getFlagReason() + ")");
-      return;
+      out.println(errorMessage + "Video is currently flagged (reason: " + newVideo.getFlagReason() + ")");
+      return false;
     }
-    if (videos.contains(newVideo)){
-      System.out.println(errorMessage + "Video already added");
-    }else {
-      videos.add(newVideo);
-      playLists.put(playlistName, videos);
-      System.out.println("Added video to " + playlistName + ": " + newVideo.getTitle());
+    synchronized (playLists) {
+      //another session of the user may have deleted the playlist meanwhile
+      VideoPlaylist videos = playLists.get(actualName);
+      if (videos == null){
+        out.println(errorMessage + "Playlist does not exist");
+        return false;
+      }
+      if (!videos.add(newVideo)){
+        out.println(errorMessage + "Video already added");
+        return false;
+      }
+      this.logged = log.addVideo(user, actualName, videoId);
     }
+    out.println("Added video to " + playlistName + ": " + newVideo.getTitle());
+    return true;
   }
 
-  public void playPlaylist(String playlistName) {
+  public boolean playPlaylist(String playlistName) {
     String errorMessage = "Cannot play playlist: " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
       userCreatePlayListAsk(playlistName);
-      return;
+      return false;
     }
 
-    List<Video> playList = this.playLists.get(actualName);
+    //another session of the user may have deleted the playlist meanwhile
+    VideoPlaylist playList = this.playLists.get(actualName);
+    if (playList == null){
+      out.println(errorMessage + "Playlist does not exist");
+      return false;
+    }
 
-    if (playList.size() == 0){
-      System.out.println(errorMessage + "Playlist is empty");
+    Video first;
+    synchronized (playList) {
+      if (playList.size() == 0){
+        out.println(errorMessage + "Playlist is empty");
+        return false;
+      }
+      first = playList.get(0);
     }
 
     this.playlistPlaying = actualName;
     currentVideoNum = 0;
-    this.playVideo(playList.get(currentVideoNum).getVideoId());
+    this.playVideo(first.getVideoId());
+    return true;
   }
 
-  public void next() {
+  public boolean next() {
     String errorMessage = "Cannot play next video: ";
-    if(playlistPlaying == null){
-      System.out.println(errorMessage + "No playlist playing");
-      return;
+    //the playlist may also have been deleted by another session of the user
+    VideoPlaylist playList = playlistPlaying == null ? null : playLists.get(playlistPlaying);
+    if(playList == null){
+      out.println(errorMessage + "No playlist playing");
+      return false;
     }
-    if(playLists.get(playlistPlaying).size() - 1 == currentVideoNum){
-      System.out.println(errorMessage + "Already playing last video in playlist");
-      return;
+    Video video;
+    synchronized (playList) {
+      if(playList.size() - 1 <= currentVideoNum){
+        out.println(errorMessage + "Already playing last video in playlist");
+        return false;
+      }
+      currentVideoNum++;
+      video = playList.get(currentVideoNum);
     }
-
-    currentVideoNum++;
-    this.playVideo(playLists.get(playlistPlaying).get(currentVideoNum).getVideoId());
+    this.playVideo(video.getVideoId());
+    return true;
   }
 
-  public void previous() {
+  public boolean previous() {
     String errorMessage = "Cannot play previous video: ";
-    if(playlistPlaying == null){
-      System.out.println(errorMessage + "No playlist playing");
-      return;
+    //the playlist may also have been deleted by another session of the user
+    VideoPlaylist playList = playlistPlaying == null ? null : playLists.get(playlistPlaying);
+    if(playList == null){
+      out.println(errorMessage + "No playlist playing");
+      return false;
     }
-    if(currentVideoNum == 0) {
-      System.out.println(errorMessage + "Already playing first video in playlist");
-      return;
+    Video video;
+    synchronized (playList) {
+      if(currentVideoNum == 0 || playList.isEmpty()) {
+        out.println(errorMessage + "Already playing first video in playlist");
+        return false;
+      }
+      //another session of the user may have shortened the playlist
+      currentVideoNum = Math.min(currentVideoNum, playList.size()) - 1;
+      video = playList.get(currentVideoNum);
     }
-
-    currentVideoNum--;
-    this.playVideo(playLists.get(playlistPlaying).get(currentVideoNum).getVideoId());
+    this.playVideo(video.getVideoId());
+    return true;
   }
 
   public void showCurrentPlaylist() {
     if(playlistPlaying == null){
-      System.out.println("No playlist playing");
+      out.println("No playlist playing");
       return;
     }
 
-    System.out.println("Current playlist: " + playlistPlaying);
+    out.println("Current playlist: " + playlistPlaying);
   }
 
   /** Close current playlist and return the playlist name **/
   public String closePlaylist(){
     if(playlistPlaying == null){
-      System.out.println("Cannot close playlist: No playlist playing");
+      out.println("Cannot close playlist: No playlist playing");
       return "";
     }
 
     String name = playlistPlaying;
     this.playlistPlaying = null;
-    System.out.println("Successfully closed playlist: " + name);
+    out.println("Successfully closed playlist: " + name);
     return name;
   }
 
   public void showAllPlaylists() {
     if (playLists.size() == 0){
-      System.out.println("No playlists exist yet");
+      out.println("No playlists exist yet");
       return;
     }
 
-    Set<String> names = playLists.keySet();
-    System.out.println("Showing all playlists:");
+    List<String> names = playLists.names();
+    out.println("Showing all playlists:");
     for (String name: names){
-      int size = playLists.get(name).size();
+      VideoPlaylist playList = playLists.get(name);
+      //deleted by another session of the user since the names were taken
+      if (playList == null){
+        continue;
+      }
+      int size = playList.size();
       if (size == 1 || size == 0){
-        System.out.println("  " + name + "(" + size + " video)");
+        out.println("  " + name + "(" + size + " video)");
       }else {
-        System.out.println("  " + name + "(" + size + " videos)");
+        out.println("  " + name + "(" + size + " videos)");
       }
     }
   }
 
   public void showPlaylist(String playlistName) {
     String errorMessage = "Cannot show playlist " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
       userCreatePlayListAsk(playlistName);
       return;
     }
 
-    System.out.println("Showing playlist: " + playlistName);
-    List<Video> videos = playLists.get(actualName);
-    if (videos.size() == 0){
-      System.out.println("No videos here yet");
+    //another session of the user may have deleted the playlist meanwhile
+    VideoPlaylist playList = playLists.get(actualName);
+    if (playList == null){
+      out.println(errorMessage + "Playlist does not exist");
+      return;
+    }
+    //formatting and writing happen outside the lock, other sessions may change the playlist meanwhile
+    List<Video> videos = playList.videos();
+    out.println("Showing playlist: " + playlistName);
+    if (videos.isEmpty()){
+      out.println("No videos here yet");
     }else{
       for(Video video: videos){
         if(video.isFlag()){
-          System.out.println("  " + this.getVideoInfo(video) + " - FLAGGED (reason: " + video.getFlagReason() + ")");
+          out.println("  " + this.getVideoInfo(video) + " - FLAGGED (reason: " + video.getFlagReason() + ")");
         }else{
-          System.out.println("  " + this.getVideoInfo(video));
+          out.println("  " + this.getVideoInfo(video));
         }
       }
     }
   }
 
-  public void removeFromPlaylist(String playlistName, String videoId) {
+  public boolean removeFromPlaylist(String playlistName, String videoId) {
     String errorMessage = "Cannot remove video from " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
-      return;
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
+      return false;
     }
     if (videoLibrary.getVideo(videoId) == null){
-      System.out.println(errorMessage + "Video does not exist");
-      return;
+      out.println(errorMessage + "Video does not exist");
+      return false;
     }
 
-    List<Video> videos = playLists.get(actualName);
     Video videoToRemove = videoLibrary.getVideo(videoId);
-    if (!videos.contains(videoToRemove)){
-      System.out.println(errorMessage + "Video is not in playlist");
-    }else{
-      videos.remove(videoToRemove);
-      playLists.put(actualName, videos);
-      System.out.println("Removed video from " + playlistName + ": " + videoToRemove.getTitle());
+    synchronized (playLists) {
+      VideoPlaylist videos = playLists.get(actualName);
+      if (videos == null){
+        out.println(errorMessage + "Playlist does not exist");
+        return false;
+      }
+      if (!videos.remove(videoToRemove)){
+        out.println(errorMessage + "Video is not in playlist");
+        return false;
+      }
+      this.logged = log.removeVideo(user, actualName, videoId);
     }
+    out.println("Removed video from " + playlistName + ": " + videoToRemove.getTitle());
+    return true;
   }
 
-  /** clear playlist and returns name of playlist and a list of videos in there, return null if failed **/
-  public HashMap<String, List<Video>> clearPlaylist(String playlistName) {
+  /** clear playlist and returns the videos that were in there, return null if failed **/
+  public VideoPlaylist clearPlaylist(String playlistName) {
     String errorMessage = "Cannot clear playlist " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
       return null;
     }
 
-    List<Video> videos = playLists.get(actualName);
-    playLists.put(actualName, new ArrayList<>());
-    System.out.println("Successfully removed all videos from " + playlistName);
-    HashMap<String, List<Video>> map = new HashMap<>();
-    map.put(actualName, videos);
-    return map;
+    VideoPlaylist videos;
+    synchronized (playLists) {
+      videos = playLists.clear(actualName);
+      if (videos == null){
+        out.println(errorMessage + "Playlist does not exist");
+        return null;
+      }
+      this.logged = log.clearPlaylist(user, actualName);
+    }
+    out.println("Successfully removed all videos from " + playlistName);
+    return videos;
   }
 
   /**  Delete playlist and return the name**/
   public String deletePlaylist(String playlistName) {
     String errorMessage = "Cannot delete playlist " + playlistName + ": ";
-    String playlistNameLower = playlistName.toLowerCase(Locale.ROOT);
-    String actualName = "";
-    boolean flag = false;
-    for (String name : playLists.keySet()) {
-      if (name.toLowerCase(Locale.ROOT).equals(playlistNameLower)){
-        flag = true;
-        actualName = name;
-      }
-    }
-    if (!flag){
-      System.out.println(errorMessage + "Playlist does not exist");
+    String actualName = playLists.displayName(playlistName);
+    if (actualName == null){
+      out.println(errorMessage + "Playlist does not exist");
       return "";
     }
 
-    playLists.remove(actualName);
-    System.out.println("Deleted playlist: " + playlistName);
+    synchronized (playLists) {
+      actualName = playLists.delete(actualName);
+      if (actualName == null){
+        out.println(errorMessage + "Playlist does not exist");
+        return "";
+      }
+      this.logged = log.deletePlaylist(user, actualName);
+    }
+    out.println("Deleted playlist: " + playlistName);
     return actualName;
   }
 
+  /** the videos of a playlist, null if it does not exist **/
+  VideoPlaylist getPlaylist(String playlistName) {
+    String actualName = playLists.displayName(playlistName);
+    return actualName == null ? null : playLists.get(actualName);
+  }
+
+  /** put back a deleted playlist with the videos it held, false if the name is taken again **/
+  boolean restorePlaylist(String playlistName, VideoPlaylist videos) {
+    synchronized (playLists) {
+      if (!playLists.restore(playlistName, videos)){
+        out.println("Cannot restore playlist " + playlistName + ": Playlist already exists");
+        return false;
+      }
+      this.logged = log.setPlaylist(user, playlistName, videos);
+    }
+    out.println("Restored playlist: " + playlistName);
+    return true;
+  }
+
+  /** put back the videos of a cleared playlist and return the ones it held, null if it is gone **/
+  VideoPlaylist restoreVideos(String playlistName, VideoPlaylist videos) {
+    VideoPlaylist current;
+    synchronized (playLists) {
+      current = playLists.swap(playlistName, videos);
+      if (current == null){
+        out.println("Cannot restore videos of " + playlistName + ": Playlist does not exist");
+        return null;
+      }
+      this.logged = log.setPlaylist(user, playLists.displayName(playlistName), videos);
+    }
+    out.println("Restored " + videos.size() + " videos to " + playlistName);
+    return current;
+  }
+
 
   // -----------Video searching-----------//
   public void searchVideos(String searchTerm) {
-    //search and sort
+    //the index returns matches already sorted by title
     List<Video> result = new ArrayList<>();
-    for (Video video: videoLibrary.getVideos()){
-      if (video.isFlag()){
-        continue;
-      }
-      if(video.getTitle().toLowerCase(Locale.ROOT).contains(searchTerm.toLowerCase(Locale.ROOT))){
+    for (Video video: videoLibrary.searchTitles(searchTerm)){
+      if (!video.isFlag()){
         result.add(video);
       }
     }
-    result = this.sortVideos(result);
 
     //display results
     if(result.size() == 0){
-      System.out.println("No search results for " + searchTerm);
+      out.println("No search results for " + searchTerm);
       return;
     }
 
-    Scanner scanner = new Scanner(System.in);
-    System.out.println("Here are the results for " + searchTerm + ":");
+    out.println("Here are the results for " + searchTerm + ":");
     for (int i = 0; i < result.size();i++){
-      System.out.println("  " + (i+1) + ") " + this.getVideoInfo(result.get(i)));
+      out.println("  " + (i+1) + ") " + this.getVideoInfo(result.get(i)));
     }
 
     //Begin interaction
-    System.out.println("Would you like to play any of the above? If yes, specify the number of the video.");
-    System.out.println("If your answer is not a valid number, we will assume it's a no.");
-
-    String input = scanner.next();
-    int index;
-    if (!StringUtils.isNumeric(input)){
-      return;
-    }else{
-      index = Integer.parseInt(input) - 1;
-    }
+    out.println("Would you like to play any of the above? If yes, specify the number of the video.");
+    out.println("If your answer is not a valid number, we will assume it's a no.");
 
+    int index = prompts.choose(result.size()) - 1;
     if (index>=0 && index < result.size()){
       Video videoToPlay = result.get(index);
       this.playVideo(videoToPlay.getVideoId());
@@ -502,48 +630,28 @@ public class VideoPlayer {
 
   public void searchVideosWithTag(String videoTag) {
     List<Video> result = new ArrayList<>();
-    for (Video video: videoLibrary.getVideos()){
-      boolean flag = false;
-      if (video.isFlag()){
-        continue;
-      }
-      for(String tag: video.getTags()){
-        if (tag.toLowerCase(Locale.ROOT).equals(videoTag.toLowerCase(Locale.ROOT))){
-          flag = true;
-          break;
-        }
-      }
-
-      if(flag){
+    for (Video video: videoLibrary.getVideosWithTag(videoTag)){
+      if(!video.isFlag()){
         result.add(video);
       }
     }
-    result = this.sortVideos(result);
 
     //display results
     if(result.size() == 0){
-      System.out.println("No search results for " + videoTag);
+      out.println("No search results for " + videoTag);
       return;
     }
 
-    Scanner scanner = new Scanner(System.in);
-    System.out.println("Here are the results for " + videoTag + ":");
+    out.println("Here are the results for " + videoTag + ":");
     for (int i = 0; i < result.size();i++){
-      System.out.println("  " + (i+1) + ") " + this.getVideoInfo(result.get(i)));
+      out.println("  " + (i+1) + ") " + this.getVideoInfo(result.get(i)));
     }
 
     //Begin interaction
-    System.out.println("Would you like to play any of the above? If yes, specify the number of the video.");
-    System.out.println("If your answer is not a valid number, we will assume it's a no.");
-
-    String input = scanner.next();
-    int index;
-    if (!StringUtils.isNumeric(input)){
-      return;
-    }else{
-      index = Integer.parseInt(input) - 1;
-    }
+    out.println("Would you like to play any of the above? If yes, specify the number of the video.");
+    out.println("If your answer is not a valid number, we will assume it's a no.");
 
+    int index = prompts.choose(result.size()) - 1;
     if (index>=0 && index < result.size()){
       Video videoToPlay = result.get(index);
       this.playVideo(videoToPlay.getVideoId());
@@ -552,68 +660,83 @@ public class VideoPlayer {
 
 
   //-----------Video flagging------------------
-  public void flagVideo(String videoId) {
+  public boolean flagVideo(String videoId) {
     String errorMessage = "Cannot flag video: ";
 
     if(videoLibrary.getVideo(videoId)==null){
-      System.out.println(errorMessage + "Video does not exist");
-      return;
+      out.println(errorMessage + "Video does not exist");
+      return false;
     }
 
     Video video = videoLibrary.getVideo(videoId);
-    if(video.isFlag()){
-      System.out.println(errorMessage + "Video is already flagged");
-      return;
+    //the flag is shared by all sessions, checking and setting it is one step
+    synchronized (videoLibrary.flagLock(video)) {
+      if(video.isFlag()){
+        out.println(errorMessage + "Video is already flagged");
+        return false;
+      }
+      videoLibrary.setFlag(video, true);
+      this.logged = log.flagVideo(videoId, null);
     }
-
-    video.setFlag(true);
-    if (this.videoPlaying == video){
+    if (this.isPlaying(video)){
       this.stopVideo();
     }
-    System.out.println("Successfully flagged video: " + video.getTitle() + " (reason: " + video.getFlagReason() + ")");
+    out.println("Successfully flagged video: " + video.getTitle() + " (reason: " + video.getFlagReason() + ")");
+    return true;
   }
 
-  public void flagVideo(String videoId, String reason) {
+  public boolean flagVideo(String videoId, String reason) {
     String errorMessage = "Cannot flag video: ";
 
+    if(!MutationLog.fits(reason)){
+      out.println(errorMessage + "Reason is too long");
+      return false;
+    }
+
     if(videoLibrary.getVideo(videoId)==null){
-      System.out.println(errorMessage + "Video does not exist");
-      return;
+      out.println(errorMessage + "Video does not exist");
+      return false;
     }
 
     Video video = videoLibrary.getVideo(videoId);
-    if(video.isFlag()){
-      System.out.println(errorMessage + "Video is already flagged");
-      return;
+    synchronized (videoLibrary.flagLock(video)) {
+      if(video.isFlag()){
+        out.println(errorMessage + "Video is already flagged");
+        return false;
+      }
+      video.setFlagReason(reason);
+      videoLibrary.setFlag(video, true);
+      this.logged = log.flagVideo(videoId, reason);
     }
-
-    if (this.videoPlaying == video){
+    if (this.isPlaying(video)){
       this.stopVideo();
     }
-    video.setFlag(true);
-    video.setFlagReason(reason);
-    System.out.println("Successfully flagged video: " + video.getTitle() + " (reason: " + video.getFlagReason() + ")");
+    out.println("Successfully flagged video: " + video.getTitle() + " (reason: " + video.getFlagReason() + ")");
+    return true;
   }
 
   /** allow video and returns the flag reason**/
   public String allowVideo(String videoId) {
     String errorMessage = "Cannot remove flag from video: ";
     if(videoLibrary.getVideo(videoId) == null){
-      System.out.println(errorMessage + "Video does not exist");
+      out.println(errorMessage + "Video does not exist");
       return "";
     }
 
     Video video = videoLibrary.getVideo(videoId);
-    if(!video.isFlag()){
-      System.out.println(errorMessage + "Video is not flagged");
-      return "";
-    }else {
-      String reason = video.getFlagReason();
-      video.setFlag(false);
+    String reason;
+    synchronized (videoLibrary.flagLock(video)) {
+      if(!video.isFlag()){
+        out.println(errorMessage + "Video is not flagged");
+        return "";
+      }
+      reason = video.getFlagReason();
+      videoLibrary.setFlag(video, false);
       video.setFlagReason("Not supplied");
-      System.out.println("Successfully removed flag from video: " + video.getTitle());
-      return reason;
+      this.logged = log.allowVideo(videoId);
     }
+    out.println("Successfully removed flag from video: " + video.getTitle());
+    return reason;
   }
 
   //---------------Rating system---------------
@@ -621,16 +744,19 @@ public class VideoPlayer {
     String errorMessage = "Cannot rate video: ";
     Video video = videoLibrary.getVideo(videoId);
     if (video == null){
-      System.out.println(errorMessage + "Video does not exist");
+      out.println(errorMessage + "Video does not exist");
       return;
     }
 
     if(score < 1 || score > 5){
-      System.out.println(errorMessage + "Score should be from 1 to 5, and should be an integer");
+      out.println(errorMessage + "Score should be from 1 to 5, and should be an integer");
       return;
     }
 
     video.addScore(score);
-    System.out.println("Rated video: " + video.getTitle() + ", score: " + score);
+    videoLibrary.ratingsChanged();
+    //ratings add up in any order, they need no lock
+    this.logged = log.rateVideo(videoId, score);
+    out.println("Rated video: " + video.getTitle() + ", score: " + score);
   }
 }
\ No newline at end of file
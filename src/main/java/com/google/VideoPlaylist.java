@@ -1,6 +1,222 @@
 package com.google;
 
-/** A class used to represent a Playlist */
-class VideoPlaylist {
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * A class used to represent a Playlist.
+ *
+ * <p>Videos sit in slots in the order they were added. Removing a video only clears its slot,
+ * a Fenwick tree over the occupied slots turns a position in the playlist into a slot in
+ * O(log n), and the slots are compacted once most of them are empty. Membership is an open
+ * addressing table from video ordinal to slot, so contains, add and remove never scan the
+ * playlist.
+ *
+ * <p>Every method locks the playlist, so sessions of the same user can share it. Hold the lock
+ * of the playlist while iterating it or combining several calls.
+ */
+class VideoPlaylist implements Iterable<Video> {
+
+  private static final int MIN_CAPACITY = 8;
+
+  //videos in insertion order, null where a video was removed
+  private Video[] slots = new Video[MIN_CAPACITY];
+  //slots in use, occupied or cleared
+  private int end;
+  private int size;
+  //Fenwick tree over slot occupancy, 1-based
+  private int[] tree = new int[MIN_CAPACITY + 1];
+  //video ordinal to slot + 1, 0 marks a free entry
+  private int[] keys = new int[2 * MIN_CAPACITY];
+  private int[] values = new int[2 * MIN_CAPACITY];
+
+  synchronized int size() {
+    return size;
+  }
+
+  synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  synchronized boolean contains(Video video) {
+    return this.slotOf(video) >= 0;
+  }
+
+  /** Appends a video, returns false if it is already in the playlist. */
+  synchronized boolean add(Video video) {
+    if (video.getOrdinal() < 0) {
+      throw new IllegalArgumentException("Video is not in a library: " + video.getVideoId());
+    }
+    if (this.contains(video)) {
+      return false;
+    }
+    if (end == slots.length) {
+      //reuse cleared slots when there are many, grow otherwise
+      this.rebuild(size < end / 2 ? slots.length : slots.length * 2);
+    }
+    int slot = end++;
+    slots[slot] = video;
+    //a new last node of the tree covers its own slot and the slots of its children
+    int node = slot + 1;
+    tree[node] = 1 + this.prefix(node - 1) - this.prefix(node - (node & -node));
+    this.put(video.getOrdinal(), slot);
+    size++;
+    return true;
+  }
+
+  /** Removes a video, keeping the order of the others. Returns false if it was not here. */
+  synchronized boolean remove(Video video) {
+    int slot = this.slotOf(video);
+    if (slot < 0) {
+      return false;
+    }
+    slots[slot] = null;
+    //nodes past end are not part of the tree yet, they are set when their slot is used
+    for (int node = slot + 1; node <= end; node += node & -node) {
+      tree[node]--;
+    }
+    this.delete(video.getOrdinal());
+    size--;
+    if (end > MIN_CAPACITY && size < end / 4) {
+      this.rebuild(Math.max(MIN_CAPACITY, slots.length / 2));
+    }
+    return true;
+  }
+
+  /** Video at a position of the playlist. */
+  synchronized Video get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    //descend the tree to the first slot with index + 1 occupied slots up to it
+    int node = 0;
+    int remaining = index + 1;
+    for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+      int next = node + step;
+      if (next <= end && tree[next] < remaining) {
+        node = next;
+        remaining -= tree[next];
+      }
+    }
+    return slots[node];
+  }
+
+  /** Copy of the videos in playlist order, for callers that should not hold the lock. */
+  synchronized List<Video> videos() {
+    List<Video> videos = new ArrayList<>(size);
+    for (Video video : this) {
+      videos.add(video);
+    }
+    return videos;
+  }
+
+  @Override
+  public Iterator<Video> iterator() {
+    return new Iterator<>() {
+      private int slot = this.skip(0);
+
+      private int skip(int from) {
+        while (from < end && slots[from] == null) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return slot < end;
+      }
+
+      @Override
+      public Video next() {
+        if (slot >= end) {
+          throw new NoSuchElementException();
+        }
+        Video video = slots[slot];
+        slot = this.skip(slot + 1);
+        return video;
+      }
+    };
+  }
+
+  private int prefix(int node) {
+    int sum = 0;
+    for (; node > 0; node -= node & -node) {
+      sum += tree[node];
+    }
+    return sum;
+  }
+
+  /** Moves the videos to the front of new slots and rebuilds the tree and the table. */
+  private void rebuild(int capacity) {
+    Video[] live = new Video[capacity];
+    int count = 0;
+    for (int slot = 0; slot < end; slot++) {
+      if (slots[slot] != null) {
+        live[count++] = slots[slot];
+      }
+    }
+    slots = live;
+    end = count;
+    tree = new int[capacity + 1];
+    for (int node = 1; node <= count; node++) {
+      tree[node]++;
+      int parent = node + (node & -node);
+      if (parent <= capacity) {
+        tree[parent] += tree[node];
+      }
+    }
+    int tableSize = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) - 1) << 2;
+    keys = new int[tableSize];
+    values = new int[tableSize];
+    for (int slot = 0; slot < count; slot++) {
+      this.put(slots[slot].getOrdinal(), slot);
+    }
+  }
+
+  private static int hash(int ordinal) {
+    return (ordinal * 0x9E3779B9) >>> 7;
+  }
+
+  /** Slot of the video, -1 if it is not in the playlist. */
+  private int slotOf(Video video) {
+    int mask = keys.length - 1;
+    for (int entry = hash(video.getOrdinal()) & mask; values[entry] != 0; entry = (entry + 1) & mask) {
+      //videos of a row store are views built per use, the ordinal is what identifies them
+      if (keys[entry] == video.getOrdinal()) {
+        return values[entry] - 1;
+      }
+    }
+    return -1;
+  }
+
+  private void put(int ordinal, int slot) {
+    int mask = keys.length - 1;
+    int entry = hash(ordinal) & mask;
+    while (values[entry] != 0) {
+      entry = (entry + 1) & mask;
+    }
+    keys[entry] = ordinal;
+    values[entry] = slot + 1;
+  }
+
+  private void delete(int ordinal) {
+    int mask = keys.length - 1;
+    int gap = hash(ordinal) & mask;
+    while (keys[gap] != ordinal || values[gap] == 0) {
+      gap = (gap + 1) & mask;
+    }
+    //shift later entries of the probe run back so lookups never stop at the hole
+    for (int probe = (gap + 1) & mask; values[probe] != 0; probe = (probe + 1) & mask) {
+      int home = hash(keys[probe]) & mask;
+      if (((probe - home) & mask) >= ((probe - gap) & mask)) {
+        keys[gap] = keys[probe];
+        values[gap] = values[probe];
+        gap = probe;
+      }
+    }
+    values[gap] = 0;
+  }
 }
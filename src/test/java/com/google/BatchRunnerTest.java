@@ -0,0 +1,63 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public class BatchRunnerTest {
+
+  private final MemorySink output = new MemorySink();
+  private final PlayerEngine engine = new PlayerEngine(new VideoLibrary());
+
+  private BatchRunner runner(PromptPolicy prompts) {
+    return new BatchRunner(new CommandParser(engine.openSession(PlayerEngine.DEFAULT_USER, output, prompts)));
+  }
+
+  @Test
+  public void testRunsScriptWithoutWaitingForAnswers() throws IOException {
+    BatchRunner runner = this.runner(PromptPolicy.DECLINE);
+    runner.run(new StringReader(String.join("\n",
+        "SEARCH_VIDEOS cat",
+        "",
+        "ADD_TO_PLAYLIST mix 001",
+        "play",
+        "NUMBER_OF_VIDEOS",
+        "exit",
+        "NUMBER_OF_VIDEOS")));
+
+    assertEquals(4, runner.getCommands());
+    assertEquals(1, runner.getRejected());
+    String text = output.toString();
+    assertFalse(text.contains("Playing video"), text);
+    assertFalse(engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER).contains("mix"));
+    assertTrue(text.endsWith("17 videos in the library" + System.lineSeparator()), text);
+    assertTrue(runner.summary().startsWith("4 commands in "), runner.summary());
+  }
+
+  @Test
+  public void testAcceptingPolicyAnswersYes() throws IOException {
+    this.runner(PromptPolicy.named("ACCEPT")).run(new StringReader(
+        "SEARCH_VIDEOS cat\nADD_TO_PLAYLIST mix 001\nADD_TO_PLAYLIST mix 001\n"));
+
+    assertTrue(output.toString().contains("Playing video: Amazing Cats"), output.toString());
+    assertEquals(1, engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER).get("mix").size());
+  }
+
+  @Test
+  public void testRunsScriptsLongerThanOneChunk() throws IOException {
+    StringBuilder script = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      script.append("RATE_VIDEO 001 ").append(i % Video.MAX_SCORE + 1).append('\n');
+    }
+    BatchRunner runner = this.runner(PromptPolicy.DECLINE);
+    runner.run(new StringReader(script.toString()));
+
+    assertEquals(5000, runner.getCommands());
+    assertEquals(0, runner.getRejected());
+    assertEquals(5000, engine.getLibrary().getVideo("001").ratingCount());
+  }
+}
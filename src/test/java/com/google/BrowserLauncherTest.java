@@ -0,0 +1,82 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BrowserLauncherTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testBurstOpensOnlyTheLastUrl() throws IOException {
+    BrowserLauncher.Recording browser = new BrowserLauncher.Recording();
+    try (AsyncBrowserLauncher launcher = new AsyncBrowserLauncher(browser, 200)) {
+      for (int i = 0; i < 100; i++) {
+        launcher.open("url" + i);
+      }
+    }
+    assertEquals(List.of("url99"), browser.urls());
+  }
+
+  @Test
+  public void testSlowBrowserDoesNotHoldUpCommands() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BrowserLauncher.Recording opened = new BrowserLauncher.Recording();
+    BrowserLauncher slow = url -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      opened.open(url);
+    };
+    PlayerEngine engine = new PlayerEngine(new VideoLibrary());
+    MemorySink output = new MemorySink();
+    try (AsyncBrowserLauncher launcher = new AsyncBrowserLauncher(slow, 0)) {
+      CommandParser parser = new CommandParser(new VideoPlayer(
+          engine, PlayerEngine.DEFAULT_USER, output, PromptPolicy.DECLINE, launcher));
+      try {
+        parser.executeLine("PLAY 002");
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        //the first launch is stuck in the browser, the plays after it still run and coalesce
+        parser.executeLine("PLAY 001");
+        parser.executeLine("PLAY 004");
+        assertTrue(output.toString().endsWith("Playing video: Life at Google" + System.lineSeparator()));
+      } finally {
+        release.countDown();
+      }
+    }
+    VideoLibrary library = engine.getLibrary();
+    assertEquals(List.of(library.getVideo("002").getURL(), library.getVideo("004").getURL()),
+        opened.urls());
+  }
+
+  @Test
+  public void testBrowserIsFoundOnThePath() throws IOException {
+    Path empty = Files.createDirectory(directory.resolve("empty"));
+    Path bin = Files.createDirectory(directory.resolve("bin"));
+    Path opera = Files.createFile(bin.resolve("opera"));
+    opera.toFile().setExecutable(true);
+    Files.createFile(bin.resolve("firefox"));
+    String path = empty + File.pathSeparator + bin;
+
+    //firefox comes first but cannot be run
+    assertArrayEquals(new String[] {opera.toString()}, BrowserLaunch.resolve("Linux", path));
+    assertArrayEquals(new String[0], BrowserLaunch.resolve("Linux", empty.toString()));
+    assertArrayEquals(new String[] {"open"}, BrowserLaunch.resolve("Mac OS X", path));
+  }
+}
@@ -0,0 +1,99 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CheckpointTest {
+
+  @TempDir
+  Path directory;
+
+  private PlayerEngine open() throws IOException {
+    return new PlayerEngine(new VideoLibrary(), directory, MutationLog.Sync.INTERVAL);
+  }
+
+  private static CommandParser parser(PlayerEngine engine) {
+    return new CommandParser(engine.openSession(PlayerEngine.DEFAULT_USER, new MemorySink(), PromptPolicy.DECLINE));
+  }
+
+  private static List<String> videoIds(PlayerEngine engine, String playlist) {
+    List<String> ids = new ArrayList<>();
+    engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER).get(playlist).forEach(video -> ids.add(video.getVideoId()));
+    return ids;
+  }
+
+  @Test
+  public void testStartsFromCheckpointAndLogAfterIt() throws IOException {
+    long first;
+    try (PlayerEngine engine = this.open()) {
+      CommandParser parser = parser(engine);
+      parser.executeLine("CREATE_PLAYLIST Mix");
+      parser.executeLine("ADD_TO_PLAYLIST mix 003");
+      parser.executeLine("ADD_TO_PLAYLIST mix 001");
+      parser.executeLine("CREATE_PLAYLIST empty");
+      parser.executeLine("FLAG_VIDEO 005 spam");
+      parser.executeLine("FLAG_VIDEO 006");
+      parser.executeLine("RATE_VIDEO 007 4");
+      first = engine.checkpoint();
+      assertTrue(first > 0);
+      assertEquals(first, engine.checkpoint());
+
+      parser.executeLine("REMOVE_FROM_PLAYLIST mix 003");
+      parser.executeLine("ADD_TO_PLAYLIST mix 003");
+      parser.executeLine("ALLOW_VIDEO 006");
+      parser.executeLine("RATE_VIDEO 007 4");
+    }
+
+    try (PlayerEngine engine = this.open()) {
+      assertEquals(List.of("001", "003"), videoIds(engine, "mix"));
+      assertEquals(List.of("empty", "Mix"), engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER).names());
+      VideoLibrary library = engine.getLibrary();
+      assertEquals("spam", library.getVideo("005").getFlagReason());
+      assertFalse(library.getVideo("006").isFlag());
+      assertEquals(2, library.getVideo("007").ratingCount(4));
+
+      //a later checkpoint replaces the earlier one
+      long second = engine.checkpoint();
+      assertTrue(second > first);
+      assertEquals(List.of(directory.resolve(Checkpoint.name(second))), Checkpoint.checkpoints(directory));
+    }
+    try (PlayerEngine engine = this.open()) {
+      assertEquals(List.of("001", "003"), videoIds(engine, "mix"));
+      assertEquals(2, engine.getLibrary().getVideo("007").ratingCount(4));
+    }
+  }
+
+  @Test
+  public void testDeletesSegmentsTheCheckpointHolds() throws IOException {
+    long checkpointed;
+    try (MutationLog log = MutationLog.open(directory, MutationLog.Sync.COMMIT, 0, 256, new Checkpoint.State());
+        Checkpointer checkpointer = new Checkpointer(log, 0)) {
+      for (int i = 0; i < 100; i++) {
+        log.createPlaylist(PlayerEngine.DEFAULT_USER, "playlist" + i);
+        //one write per record, so they spread over many segments
+        log.commit(log.addVideo(PlayerEngine.DEFAULT_USER, "playlist" + i, "001"));
+      }
+      int segments = MutationLog.segments(directory).size();
+      checkpointed = checkpointer.checkpoint();
+      assertTrue(MutationLog.segments(directory).size() < segments);
+      log.deletePlaylist(PlayerEngine.DEFAULT_USER, "playlist0");
+    }
+    assertTrue(Files.exists(directory.resolve(Checkpoint.name(checkpointed))));
+
+    //the records before the checkpoint are gone, so everything below came from it
+    try (PlayerEngine engine = this.open()) {
+      PlaylistRegistry playlists = engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER);
+      assertEquals(99, playlists.size());
+      assertEquals(List.of("001"), videoIds(engine, "playlist99"));
+    }
+  }
+}
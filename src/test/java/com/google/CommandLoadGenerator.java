@@ -0,0 +1,254 @@
+package com.google;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens many connections to a {@link CommandServer}, keeps them all open and sends a mix of
+ * commands on each, then reports the latency per command. Not a unit test, run it with the
+ * test classpath:
+ *
+ * <pre>
+ *   java -cp target/classes:target/test-classes com.google.CommandLoadGenerator [connections] [commands] [address] [videos]
+ * </pre>
+ * where connections is 10k by default, commands the number each connection sends, 20 by
+ * default, and address where the server listens, in the form taken by
+ * {@link CommandServer#open}. Without an address a server is started in this JVM on a
+ * generated catalog of {@code videos} videos, 10k by default. A server in another JVM must
+ * serve a catalog generated the same way, written by
+ * {@code CommandLoadGenerator --catalog <path> [videos]}; two processes also halve the file
+ * descriptors each one needs. Virtual threads are used on both sides when the runtime has them.
+ */
+public class CommandLoadGenerator {
+
+  private static final String[] WORDS = {"funny", "dogs", "cats", "music", "piano", "tutorial",
+      "cooking", "travel", "review", "news", "live", "game"};
+  private static final String[] COMMANDS = {"NUMBER_OF_VIDEOS", "SHOW_ALL_VIDEOS",
+      "SEARCH_VIDEOS", "SEARCH_VIDEOS_WITH_TAG", "ADD_TO_PLAYLIST", "SHOW_PLAYLIST",
+      "REMOVE_FROM_PLAYLIST", "RATE_VIDEO", "PLAY"};
+  //connections opened at once, more only overflow the accept backlog
+  private static final int CONNECTING = 256;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("--catalog")) {
+      generate(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 10_000);
+      return;
+    }
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int commands = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int videos = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+    if (args.length > 2) {
+      run(args[2], connections, commands, videos);
+      return;
+    }
+    Path catalog = Files.createTempFile("load", ".txt");
+    try {
+      generate(catalog, videos);
+      VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+      try (CommandServer server = CommandServer.open(new PlayerEngine(library), "0").start()) {
+        run(Integer.toString(((InetSocketAddress) server.getAddress()).getPort()), connections, commands, videos);
+      }
+    } finally {
+      Files.deleteIfExists(catalog);
+    }
+  }
+
+  private static void run(String address, int connections, int commands, int videos)
+      throws Exception {
+    ThreadFactory threads = CommandServer.connectionThreads();
+    Semaphore connecting = new Semaphore(CONNECTING);
+    CountDownLatch connected = new CountDownLatch(connections);
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(connections);
+    AtomicInteger failures = new AtomicInteger();
+    long[][][] latencies = new long[connections][][];
+    for (int i = 0; i < connections; i++) {
+      int connection = i;
+      threads.newThread(() -> {
+        try {
+          Client client;
+          connecting.acquire();
+          try {
+            client = new Client(CommandServer.connect(address));
+            client.send("USER load-" + connection);
+          } finally {
+            connecting.release();
+            connected.countDown();
+          }
+          try (client) {
+            start.await();
+            latencies[connection] = client.run(new SplittableRandom(connection), commands, videos);
+          }
+        } catch (Exception e) {
+          if (failures.getAndIncrement() == 0) {
+            e.printStackTrace();
+          }
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+    connected.await();
+    System.out.printf(Locale.ROOT, "%,d connections open, %d failed%n", connections, failures.get());
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - begin;
+
+    System.out.printf(Locale.ROOT, "%-24s %10s %10s %10s %10s%n", "command (us)", "count", "p50", "p99", "max");
+    long total = 0;
+    for (int command = 0; command < COMMANDS.length; command++) {
+      List<long[]> samples = new ArrayList<>();
+      int count = 0;
+      for (long[][] connection : latencies) {
+        if (connection != null) {
+          samples.add(connection[command]);
+          count += connection[command].length;
+        }
+      }
+      long[] sorted = new long[count];
+      int at = 0;
+      for (long[] sample : samples) {
+        System.arraycopy(sample, 0, sorted, at, sample.length);
+        at += sample.length;
+      }
+      Arrays.sort(sorted);
+      total += count;
+      if (count > 0) {
+        System.out.printf(Locale.ROOT, "%-24s %,10d %,10d %,10d %,10d%n", COMMANDS[command], count,
+            sorted[(count - 1) / 2] / 1000, sorted[(int) (count * 0.99)] / 1000, sorted[count - 1] / 1000);
+      }
+    }
+    System.out.printf(Locale.ROOT, "%,d commands in %.2f s, %,.0f commands/s, %d connections failed%n",
+        total, elapsed / 1e9, total / (elapsed / 1e9), failures.get());
+  }
+
+  /** One connection, commands are timed from sending the line until the next prompt. */
+  private static final class Client implements AutoCloseable {
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+
+    Client(SocketChannel channel) throws IOException {
+      this.channel = channel;
+      this.in = new BufferedInputStream(Channels.newInputStream(channel));
+      this.out = Channels.newOutputStream(channel);
+      this.awaitPrompt();
+    }
+
+    long[][] run(SplittableRandom random, int commands, int videos) throws IOException {
+      int[] counts = new int[COMMANDS.length];
+      long[][] latencies = new long[COMMANDS.length][commands];
+      this.send("CREATE_PLAYLIST mix");
+      for (int i = 0; i < commands; i++) {
+        int command = random.nextInt(COMMANDS.length);
+        String video = "v" + random.nextInt(videos);
+        String line;
+        switch (command) {
+          case 1:
+            line = "SHOW_ALL_VIDEOS " + (1 + random.nextInt(50)) + " 20";
+            break;
+          case 2:
+            line = "SEARCH_VIDEOS " + WORDS[random.nextInt(WORDS.length)];
+            break;
+          case 3:
+            line = "SEARCH_VIDEOS_WITH_TAG #tag" + random.nextInt(50);
+            break;
+          case 4:
+            line = "ADD_TO_PLAYLIST mix " + video;
+            break;
+          case 5:
+            line = "SHOW_PLAYLIST mix";
+            break;
+          case 6:
+            line = "REMOVE_FROM_PLAYLIST mix " + video;
+            break;
+          case 7:
+            line = "RATE_VIDEO " + video + " " + (1 + random.nextInt(Video.MAX_SCORE));
+            break;
+          case 8:
+            line = "PLAY " + video;
+            break;
+          default:
+            line = COMMANDS[command];
+        }
+        long begin = System.nanoTime();
+        this.send(line);
+        latencies[command][counts[command]++] = System.nanoTime() - begin;
+      }
+      this.send("EXIT");
+      for (int command = 0; command < COMMANDS.length; command++) {
+        latencies[command] = Arrays.copyOf(latencies[command], counts[command]);
+      }
+      return latencies;
+    }
+
+    /** Sends a command and waits for the next prompt, declining any question on the way. */
+    void send(String line) throws IOException {
+      this.out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+      if (line.equals("EXIT")) {
+        return;
+      }
+      while (!this.awaitPrompt()) {
+        this.out.write("no\n".getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    /** Reads up to a prompt at the start of a line, true for a command prompt, false for a question. */
+    private boolean awaitPrompt() throws IOException {
+      StringBuilder line = new StringBuilder();
+      while (true) {
+        int next = this.in.read();
+        if (next < 0) {
+          throw new EOFException("Server closed the connection");
+        }
+        if (next == '\n') {
+          line.setLength(0);
+          continue;
+        }
+        line.append((char) next);
+        if (line.length() == CommandServer.PROMPT.length() && line.toString().equals(CommandServer.PROMPT)) {
+          return true;
+        }
+        if (line.length() == CommandServer.QUESTION.length() && line.toString().equals(CommandServer.QUESTION)) {
+          return false;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.channel.close();
+    }
+  }
+
+  private static void generate(Path catalog, int count) throws IOException {
+    SplittableRandom random = new SplittableRandom(count);
+    try (BufferedWriter writer = Files.newBufferedWriter(catalog, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < count; i++) {
+        writer.write(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+            + " " + i + " | v" + i + " | #tag" + random.nextInt(50) + " | u\n");
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+
+public class CommandParserTest {
+
+  private final MemorySink output = new MemorySink();
+  private final PlayerEngine engine = new PlayerEngine(new VideoLibrary());
+  private final CommandParser parser = new CommandParser(new VideoPlayer(
+      engine, PlayerEngine.DEFAULT_USER, output, PromptPolicy.DECLINE, url -> { }));
+
+  @Test
+  public void testSplitsAtWhitespaceInPlace() {
+    CommandLine line = new CommandLine();
+    line.split("\t add_to_playlist  my_list\r\nv1 a b c d ");
+    assertEquals(7, line.size());
+    assertEquals("add_to_playlist", line.word(0));
+    assertEquals("my_list", line.word(1));
+    assertEquals("v1", line.word(2));
+    assertEquals("d", line.word(6));
+    assertEquals(2, line.start(1) - line.end(0));
+
+    assertEquals(0, line.split("").size());
+    assertEquals(0, line.split(" \t ").size());
+    assertEquals(1, line.split("HELP").size());
+  }
+
+  @Test
+  public void testNumbers() {
+    CommandLine line = new CommandLine().split("3 -12 +7 2147483647 2147483648 12a - 99999999999");
+    assertEquals(3, line.number(0));
+    assertEquals(-12, line.number(1));
+    assertEquals(7, line.number(2));
+    assertTrue(line.isNumber(3));
+    assertEquals(Integer.MAX_VALUE, line.number(3));
+    assertFalse(line.isNumber(4));
+    assertFalse(line.isNumber(5));
+    assertFalse(line.isNumber(6));
+    assertFalse(line.isNumber(7));
+  }
+
+  @Test
+  public void testVerbsResolveIgnoringCase() {
+    for (Verb verb : Verb.values()) {
+      String name = verb.name();
+      assertSame(verb, Verb.lookup(name, 0, name.length()));
+      String lower = "  " + name.toLowerCase(Locale.ROOT) + " x";
+      assertSame(verb, Verb.lookup(lower, 2, 2 + name.length()));
+    }
+    assertNull(Verb.lookup("PLAYY", 0, 5));
+    assertNull(Verb.lookup("PLA", 0, 3));
+    assertNull(Verb.lookup("EXIT", 0, 4));
+    assertNull(Verb.lookup("", 0, 0));
+  }
+
+  @Test
+  public void testArgumentsAreCheckedBeforeRunning() {
+    parser.executeLine("PLAY");
+    parser.executeLine("next playlist");
+    parser.executeLine("RATE_VIDEO 002 five");
+    parser.executeLine("SHOW_ALL_VIDEOS one");
+    parser.executeLine("PLAY_RANDOM best");
+    parser.executeLine("unknown");
+    parser.executeLine("");
+    String[] lines = output.toString().split("\\r?\\n");
+    assertEquals(Verb.PLAY.usage, lines[0]);
+    assertEquals("NEXT takes no arguments.", lines[1]);
+    assertEquals(Verb.RATE_VIDEO.usage, lines[2]);
+    assertEquals(Verb.SHOW_ALL_VIDEOS.usage, lines[3]);
+    assertEquals(Verb.PLAY_RANDOM.usage, lines[4]);
+    assertEquals("Please enter a valid command, type HELP for a list of available commands.", lines[5]);
+    assertEquals(lines[5], lines[6]);
+  }
+
+  @Test
+  public void testCommandsRunInAnyCase() {
+    parser.executeLine("  number_of_videos ");
+    parser.executeLine("Create_Playlist Mix");
+    parser.executeCommand(List.of("ADD_TO_PLAYLIST", "mix", "002"));
+    String[] lines = output.toString().split("\\r?\\n");
+    assertEquals("17 videos in the library", lines[0]);
+    assertEquals("Successfully created new playlist: Mix", lines[1]);
+    assertEquals("Added video to mix: Amazing Cats", lines[2]);
+  }
+
+  @Test
+  public void testUndoesAndRedoesSeveralCommands() {
+    PlaylistRegistry playlists = engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER);
+    parser.executeLine("CREATE_PLAYLIST mix");
+    parser.executeLine("ADD_TO_PLAYLIST mix 001");
+    parser.executeLine("ADD_TO_PLAYLIST mix 002");
+    parser.executeLine("PLAY 003");
+    parser.executeLine("PLAY 004");
+
+    parser.executeLine("UNDO");
+    parser.executeLine("UNDO");
+    parser.executeLine("UNDO");
+    assertEquals(1, playlists.get("mix").size());
+    assertTrue(output.toString().endsWith("Removed video from mix: Amazing Cats" + System.lineSeparator()),
+        output.toString());
+
+    parser.executeLine("REDO");
+    assertEquals(2, playlists.get("mix").size());
+    parser.executeLine("UNDO");
+    parser.executeLine("UNDO");
+    parser.executeLine("UNDO");
+    assertFalse(playlists.contains("mix"));
+    output.clear();
+    parser.executeLine("UNDO");
+    parser.executeLine("REDO");
+    parser.executeLine("SHOW_ALL_VIDEOS 1 1");
+    parser.executeLine("REDO");
+    String[] lines = output.toString().split("\\r?\\n");
+    assertEquals("Cannot undo command: nothing to undo", lines[0]);
+    assertEquals("Redoing CREATE_PLAYLIST", lines[1]);
+    assertEquals("Redoing ADD_TO_PLAYLIST", lines[lines.length - 2]);
+  }
+
+  @Test
+  public void testUndoPutsBackClearedAndDeletedPlaylists() {
+    PlaylistRegistry playlists = engine.getPlaylists().forUser(PlayerEngine.DEFAULT_USER);
+    parser.executeLine("CREATE_PLAYLIST mix");
+    parser.executeLine("ADD_TO_PLAYLIST mix 001");
+    parser.executeLine("ADD_TO_PLAYLIST mix 002");
+    VideoPlaylist videos = playlists.get("mix");
+
+    parser.executeLine("CLEAR_PLAYLIST mix");
+    parser.executeLine("UNDO");
+    //the same videos come back, not copies of them
+    assertSame(videos, playlists.get("mix"));
+    parser.executeLine("REDO");
+    assertEquals(0, playlists.get("mix").size());
+    parser.executeLine("UNDO");
+
+    parser.executeLine("delete_playlist MIX");
+    assertFalse(playlists.contains("mix"));
+    parser.executeLine("UNDO");
+    assertSame(videos, playlists.get("mix"));
+    assertEquals("mix", playlists.displayName("MIX"));
+    output.clear();
+    //commands that failed are not undone, and the delete dropped the undone clear
+    parser.executeLine("CREATE_PLAYLIST mix");
+    parser.executeLine("UNDO");
+    assertTrue(output.toString().contains("Undoing ADD_TO_PLAYLIST"), output.toString());
+    assertEquals(1, playlists.get("mix").size());
+  }
+}
@@ -0,0 +1,122 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CommandServerTest {
+
+  @TempDir
+  Path tempDir;
+
+  private PlayerEngine engine;
+  private CommandServer server;
+  private String address;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog, "Funny Dogs | v1 | #dog | u\nAmazing Cats | v2 | #cat | u\n");
+    engine = new PlayerEngine(new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED));
+    server = CommandServer.open(engine, "0").start();
+    address = Integer.toString(((InetSocketAddress) server.getAddress()).getPort());
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void testConnectionsAreSessionsOfTheirUser() throws IOException {
+    try (Connection alice = new Connection(); Connection bob = new Connection()) {
+      alice.send("USER alice");
+      assertEquals("Successfully created new playlist: Mix", alice.send("CREATE_PLAYLIST Mix"));
+      //bob has playlists of their own and is asked to create it
+      String reply = bob.send("ADD_TO_PLAYLIST mix v1");
+      assertTrue(reply.startsWith("Cannot add video to mix: Playlist does not exist"), reply);
+      assertTrue(reply.endsWith(CommandServer.QUESTION.strip()), reply);
+      assertEquals("Successfully created new playlist: mix", bob.send("yes"));
+      assertEquals("Added video to mix: Funny Dogs", bob.send("ADD_TO_PLAYLIST mix v1"));
+      assertEquals("Added video to MIX: Amazing Cats", alice.send("ADD_TO_PLAYLIST MIX v2"));
+      assertEquals("2 videos in the library", alice.send("NUMBER_OF_VIDEOS"));
+    }
+    assertEquals("v2", engine.getPlaylists().forUser("alice").get("mix").get(0).getVideoId());
+    assertEquals(1, engine.getPlaylists().forUser("alice").get("mix").size());
+    assertEquals(2, engine.getPlaylists().users());
+  }
+
+  @Test
+  public void testQuestionsAreAnsweredOverTheConnection() throws IOException {
+    try (Connection connection = new Connection()) {
+      String reply = connection.send("SEARCH_VIDEOS cats");
+      assertTrue(reply.endsWith(CommandServer.QUESTION.strip()), reply);
+      assertTrue(connection.send("1").startsWith("Playing video: Amazing Cats"));
+      assertEquals("YouTube has now terminated its execution. Thank you and goodbye!",
+          connection.send("EXIT"));
+    }
+  }
+
+  @Test
+  public void testTooLongUserNamesAreTurnedAway() throws IOException {
+    try (Connection connection = new Connection()) {
+      assertEquals("Cannot open session: User name is too long",
+          connection.send("USER " + "x".repeat(MutationLog.MAX_STRING_BYTES + 1)));
+    }
+    assertEquals(0, engine.sessions());
+  }
+
+  /** A client, replies are the text up to the next prompt with line ends normalised. */
+  private final class Connection implements AutoCloseable {
+    private final SocketChannel channel = CommandServer.connect(address);
+    private final BufferedReader in = new BufferedReader(
+        new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    private final OutputStream out = Channels.newOutputStream(channel);
+
+    Connection() throws IOException {
+      this.read();
+    }
+
+    String send(String line) throws IOException {
+      out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+      return this.read();
+    }
+
+    private String read() throws IOException {
+      StringBuilder reply = new StringBuilder();
+      int next;
+      while ((next = in.read()) >= 0) {
+        reply.append((char) next);
+        int lineStart = reply.lastIndexOf("\n") + 1;
+        String last = reply.substring(lineStart);
+        if (last.equals(CommandServer.PROMPT)) {
+          reply.setLength(lineStart);
+          break;
+        }
+        if (last.equals(CommandServer.QUESTION)) {
+          break;
+        }
+      }
+      return reply.toString().replace(System.lineSeparator(), "\n").strip();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MutationLogTest {
+
+  @TempDir
+  Path directory;
+
+  private PlayerEngine open() throws IOException {
+    return new PlayerEngine(new VideoLibrary(), directory, MutationLog.Sync.COMMIT);
+  }
+
+  private static CommandParser parser(PlayerEngine engine, String user) {
+    return new CommandParser(engine.openSession(user, new MemorySink(), PromptPolicy.DECLINE));
+  }
+
+  private static PlaylistRegistry playlists(PlayerEngine engine, String user) {
+    return engine.getPlaylists().forUser(user);
+  }
+
+  @Test
+  public void testChangesSurviveRestart() throws IOException {
+    try (PlayerEngine engine = this.open()) {
+      CommandParser parser = parser(engine, "alice");
+      parser.executeLine("CREATE_PLAYLIST Mix");
+      parser.executeLine("ADD_TO_PLAYLIST mix 001");
+      parser.executeLine("ADD_TO_PLAYLIST mix 002");
+      parser.executeLine("ADD_TO_PLAYLIST mix 003");
+      parser.executeLine("REMOVE_FROM_PLAYLIST mix 002");
+      parser.executeLine("CREATE_PLAYLIST gone");
+      parser.executeLine("DELETE_PLAYLIST gone");
+      parser.executeLine("CREATE_PLAYLIST cleared");
+      parser.executeLine("ADD_TO_PLAYLIST cleared 004");
+      parser.executeLine("CLEAR_PLAYLIST cleared");
+      parser.executeLine("UNDO");
+      parser.executeLine("FLAG_VIDEO 005 spam");
+      parser.executeLine("FLAG_VIDEO 006");
+      parser.executeLine("ALLOW_VIDEO 006");
+      parser.executeLine("RATE_VIDEO 007 4");
+      parser(engine, "bob").executeLine("CREATE_PLAYLIST mix");
+      engine.getRatingIngestor().ingest(new String[] {"007", "008", "007"}, new int[] {4, 1, 2}, 3);
+    }
+
+    try (PlayerEngine engine = this.open()) {
+      PlaylistRegistry alice = playlists(engine, "alice");
+      assertEquals(List.of("cleared", "Mix"), alice.names());
+      List<String> mix = new ArrayList<>();
+      alice.get("mix").forEach(video -> mix.add(video.getVideoId()));
+      assertEquals(List.of("001", "003"), mix);
+      assertEquals(1, alice.get("cleared").size());
+      assertTrue(playlists(engine, "bob").contains("mix"));
+      assertEquals(0, playlists(engine, "bob").get("mix").size());
+
+      VideoLibrary library = engine.getLibrary();
+      assertTrue(library.getVideo("005").isFlag());
+      assertEquals("spam", library.getVideo("005").getFlagReason());
+      assertFalse(library.getVideo("006").isFlag());
+      assertEquals(2, library.getVideo("007").ratingCount(4));
+      assertEquals(1, library.getVideo("007").ratingCount(2));
+      assertEquals(1, library.getVideo("008").ratingCount(1));
+    }
+  }
+
+  @Test
+  public void testReplayStopsAtTornRecord() throws IOException {
+    try (PlayerEngine engine = this.open()) {
+      CommandParser parser = parser(engine, "alice");
+      parser.executeLine("CREATE_PLAYLIST mix");
+      parser.executeLine("ADD_TO_PLAYLIST mix 001");
+    }
+    Path segment = MutationLog.segments(directory).get(0);
+    long whole;
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      whole = channel.size();
+      //the last record lost its last byte, as a crash in the middle of a write would leave it
+      channel.truncate(whole - 1);
+    }
+
+    try (PlayerEngine engine = this.open()) {
+      assertEquals(0, playlists(engine, "alice").get("mix").size());
+      parser(engine, "alice").executeLine("ADD_TO_PLAYLIST mix 002");
+    }
+    try (PlayerEngine engine = this.open()) {
+      assertTrue(playlists(engine, "alice").get("mix").contains(engine.getLibrary().getVideo("002")));
+      assertEquals(1, playlists(engine, "alice").get("mix").size());
+    }
+  }
+
+  @Test
+  public void testTooLongNamesAreTurnedAway() throws IOException {
+    String tooLong = "x".repeat(MutationLog.MAX_STRING_BYTES + 1);
+    MemorySink output = new MemorySink();
+    try (PlayerEngine engine = this.open()) {
+      CommandParser parser =
+          new CommandParser(engine.openSession("alice", output, PromptPolicy.DECLINE));
+      parser.executeLine("CREATE_PLAYLIST " + tooLong);
+      parser.executeLine("FLAG_VIDEO 005 " + tooLong);
+      parser.executeLine("CREATE_PLAYLIST mix");
+      assertEquals(List.of("mix"), playlists(engine, "alice").names());
+      assertFalse(engine.getLibrary().getVideo("005").isFlag());
+    }
+    assertTrue(output.toString().contains("Cannot create playlist: Playlist name is too long"));
+    assertTrue(output.toString().contains("Cannot flag video: Reason is too long"));
+
+    try (PlayerEngine engine = this.open()) {
+      assertEquals(List.of("mix"), playlists(engine, "alice").names());
+      assertFalse(engine.getLibrary().getVideo("005").isFlag());
+    }
+  }
+
+  @Test
+  public void testFailedRecordLeavesNothingBehind() throws IOException {
+    String tooLong = "x".repeat(MutationLog.MAX_STRING_BYTES + 1);
+    try (MutationLog log = MutationLog.open(directory, MutationLog.Sync.COMMIT, 0, 1 << 20,
+        new Recorder(new ArrayList<>()))) {
+      //the user is written before the name turns out too long
+      assertThrows(IllegalArgumentException.class, () -> log.createPlaylist("user", tooLong));
+      log.commit(log.createPlaylist("user", "after"));
+    }
+    List<String> created = new ArrayList<>();
+    MutationLog.open(directory, MutationLog.Sync.NONE, 0, 1 << 20, new Recorder(created)).close();
+    assertEquals(List.of("after"), created);
+
+    try (PlayerEngine engine = this.open()) {
+      assertThrows(IllegalArgumentException.class, () -> parser(engine, tooLong));
+    }
+  }
+
+  @Test
+  public void testReplaysAcrossSegments() throws IOException {
+    try (MutationLog log = MutationLog.open(directory, MutationLog.Sync.COMMIT, 0, 256,
+        new Recorder(new ArrayList<>()))) {
+      for (int i = 0; i < 100; i++) {
+        log.commit(log.createPlaylist("user", "playlist" + i));
+      }
+      assertTrue(log.getPosition() > 100 * 20);
+    }
+    assertTrue(MutationLog.segments(directory).size() > 5);
+    List<String> created = new ArrayList<>();
+    MutationLog.open(directory, MutationLog.Sync.NONE, 0, 256, new Recorder(created)).close();
+    assertEquals(100, created.size());
+    assertEquals("playlist99", created.get(99));
+  }
+
+  /** Keeps the names of the playlists created, nothing else happens in the test. */
+  private static final class Recorder implements MutationLog.Visitor {
+    private final List<String> created;
+
+    Recorder(List<String> created) {
+      this.created = created;
+    }
+
+    @Override
+    public void createPlaylist(String user, String name) {
+      created.add(name);
+    }
+
+    @Override
+    public void deletePlaylist(String user, String name) {
+    }
+
+    @Override
+    public void addVideo(String user, String name, String videoId) {
+    }
+
+    @Override
+    public void removeVideo(String user, String name, String videoId) {
+    }
+
+    @Override
+    public void clearPlaylist(String user, String name) {
+    }
+
+    @Override
+    public void setPlaylist(String user, String name, List<String> videoIds) {
+    }
+
+    @Override
+    public void flagVideo(String videoId, String reason) {
+    }
+
+    @Override
+    public void allowVideo(String videoId) {
+    }
+
+    @Override
+    public void rateVideo(String videoId, int score, long count) {
+    }
+  }
+}
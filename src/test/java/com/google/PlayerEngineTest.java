@@ -0,0 +1,124 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PlayerEngineTest {
+
+  private static final int VIDEOS = 400;
+
+  @TempDir
+  Path tempDir;
+
+  private PlayerEngine engine;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < VIDEOS; i++) {
+      rows.append("Video ").append(i).append(" | v").append(i).append(" | #tag").append(i % 7)
+          .append(" | u\n");
+    }
+    Files.writeString(catalog, rows);
+    engine = new PlayerEngine(new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED));
+  }
+
+  private VideoPlayer openSession(String user) {
+    return engine.openSession(user, new MemorySink(), PromptPolicy.DECLINE);
+  }
+
+  @Test
+  public void testSessionsShareLibraryAndSplitPlaylistsByUser() {
+    VideoPlayer alice = this.openSession("alice");
+    VideoPlayer aliceOnPhone = this.openSession("alice");
+    VideoPlayer bob = this.openSession("bob");
+
+    alice.createPlaylist("Mix");
+    aliceOnPhone.addVideoToPlaylist("MIX", "v1");
+    bob.createPlaylist("mix");
+
+    PlaylistRegistry alicePlaylists = engine.getPlaylists().forUser("alice");
+    PlaylistRegistry bobPlaylists = engine.getPlaylists().forUser("bob");
+    assertNotSame(alicePlaylists, bobPlaylists);
+    assertEquals(1, alicePlaylists.get("mix").size());
+    assertTrue(bobPlaylists.get("mix").isEmpty());
+    assertEquals("Mix", alicePlaylists.displayName("mix"));
+    assertEquals(2, engine.getPlaylists().users());
+    assertEquals(3, engine.sessions());
+    assertSame(engine.getRatingIngestor(), bob.getRatingIngestor());
+  }
+
+  @Test
+  public void testConcurrentSessionsKeepPlaylistsConsistent() throws Exception {
+    int users = 16;
+    ExecutorService pool = Executors.newFixedThreadPool(users);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<?>> sessions = new ArrayList<>();
+      for (int user = 0; user < users; user++) {
+        int id = user;
+        sessions.add(pool.submit(() -> {
+          VideoPlayer own = this.openSession("user" + id);
+          VideoPlayer shared = this.openSession("shared");
+          start.await();
+          own.createPlaylist("Own");
+          shared.createPlaylist("Shared");
+          for (int i = 0; i < VIDEOS; i++) {
+            own.addVideoToPlaylist("own", "v" + i);
+            //every session offers the same videos, each must end up in the playlist once
+            shared.addVideoToPlaylist("shared", "v" + i);
+            if (i % 2 == 1) {
+              own.removeFromPlaylist("OWN", "v" + (i - 1));
+            }
+            if (i % 50 == 0) {
+              own.searchVideos("zebra");
+              own.searchVideosWithTag("#none");
+              own.showPlaylist("own");
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> session : sessions) {
+        session.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    VideoPlaylist shared = engine.getPlaylists().forUser("shared").get("shared");
+    assertEquals(VIDEOS, shared.size());
+    Set<String> ids = new HashSet<>();
+    shared.forEach(video -> ids.add(video.getVideoId()));
+    assertEquals(VIDEOS, ids.size());
+    for (int user = 0; user < users; user++) {
+      VideoPlaylist own = engine.getPlaylists().forUser("user" + user).get("own");
+      assertEquals(VIDEOS / 2, own.size());
+      for (int i = 0; i < own.size(); i++) {
+        assertEquals("v" + (2 * i + 1), own.get(i).getVideoId());
+      }
+      assertFalse(own.contains(engine.getLibrary().getVideo("v0")));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PlaylistRegistryTest {
+
+  private final PlaylistRegistry registry = new PlaylistRegistry();
+
+  @Test
+  public void testNamesResolveIgnoringCaseAndKeepDisplayName() {
+    assertTrue(registry.create("My_Playlist"));
+    assertFalse(registry.create("MY_PLAYLIST"));
+
+    assertTrue(registry.contains("my_playlist"));
+    assertEquals("My_Playlist", registry.displayName("mY_pLaYlIsT"));
+    assertSame(registry.get("My_Playlist"), registry.get("my_playlist"));
+    assertNull(registry.displayName("other"));
+    assertNull(registry.get("other"));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testClearAndDelete() {
+    registry.create("Mix");
+    Video video = new FieldVideo("Funny Dogs", "001", List.of(), "");
+    video.setOrdinal(0);
+    registry.get("mix").add(video);
+
+    VideoPlaylist cleared = registry.clear("MIX");
+    assertEquals(1, cleared.size());
+    assertSame(video, cleared.get(0));
+    assertTrue(registry.get("Mix").isEmpty());
+    assertNull(registry.clear("missing"));
+
+    assertEquals("Mix", registry.delete("mIx"));
+    assertFalse(registry.contains("Mix"));
+    assertNull(registry.delete("Mix"));
+  }
+
+  @Test
+  public void testNamesAreListedAlphabetically() {
+    registry.create("my_playlist");
+    registry.create("Another_playlist");
+    registry.create("zzz");
+
+    assertEquals(List.of("Another_playlist", "my_playlist", "zzz"), registry.names());
+  }
+}
@@ -0,0 +1,128 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RatingIngestorTest {
+
+  private static final int PRODUCERS = 8;
+  private static final int BATCHES = 200;
+  private static final int BATCH_SIZE = 500;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void testBatchSkipsUnknownVideosAndBadScores() throws IOException {
+    VideoLibrary library = library(2);
+    RatingIngestor ingestor = new RatingIngestor(library);
+
+    int applied = ingestor.ingest(
+        new String[] {"v0", "v0", "v1", "missing", "v1", "v0"}, new int[] {5, 4, 1, 3, 6, 4}, 6);
+
+    assertEquals(4, applied);
+    assertEquals(4, ingestor.getAccepted());
+    assertEquals(2, ingestor.getRejected());
+    Video video = library.getVideo("v0");
+    assertEquals(3, video.ratingCount());
+    assertEquals(2, video.ratingCount(4));
+    assertEquals(13f / 3, video.averageScore());
+    assertEquals(1f, library.getVideo("v1").averageScore());
+  }
+
+  @Test
+  public void testConcurrentProducersLoseNoRatings() throws Exception {
+    int videos = 50;
+    VideoLibrary library = library(videos);
+    RatingIngestor ingestor = new RatingIngestor(library);
+    //expected[video][score - 1], filled by every producer from its own seeded stream
+    long[][] expected = new long[videos][Video.MAX_SCORE];
+    for (int producer = 0; producer < PRODUCERS; producer++) {
+      SplittableRandom random = new SplittableRandom(producer);
+      for (int i = 0; i < BATCHES * BATCH_SIZE; i++) {
+        expected[skewed(random, videos)][random.nextInt(Video.MAX_SCORE)]++;
+      }
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean producing = new AtomicBoolean(true);
+    try {
+      List<Future<?>> producers = new ArrayList<>();
+      for (int producer = 0; producer < PRODUCERS; producer++) {
+        SplittableRandom random = new SplittableRandom(producer);
+        producers.add(pool.submit(() -> {
+          start.await();
+          String[] ids = new String[BATCH_SIZE];
+          int[] scores = new int[BATCH_SIZE];
+          for (int batch = 0; batch < BATCHES; batch++) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+              ids[i] = "v" + skewed(random, videos);
+              scores[i] = random.nextInt(Video.MAX_SCORE) + 1;
+            }
+            ingestor.ingest(ids, scores, BATCH_SIZE);
+          }
+          return null;
+        }));
+      }
+      //a reader polling averages while producers run must never see an impossible value
+      Future<?> reader = pool.submit(() -> {
+        start.await();
+        while (producing.get()) {
+          for (int i = 0; i < videos; i++) {
+            float average = library.getVideo("v" + i).averageScore();
+            assertTrue(average == 0 || (average >= 1 && average <= Video.MAX_SCORE), "" + average);
+          }
+        }
+        return null;
+      });
+      start.countDown();
+      for (Future<?> producer : producers) {
+        producer.get(60, TimeUnit.SECONDS);
+      }
+      producing.set(false);
+      reader.get(60, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertEquals((long) PRODUCERS * BATCHES * BATCH_SIZE, ingestor.getAccepted());
+    assertEquals(0, ingestor.getRejected());
+    for (int i = 0; i < videos; i++) {
+      Video video = library.getVideo("v" + i);
+      for (int score = 1; score <= Video.MAX_SCORE; score++) {
+        assertEquals(expected[i][score - 1], video.ratingCount(score), "v" + i + " score " + score);
+      }
+    }
+  }
+
+  /** Video index where low indexes are far more popular, so some videos are contended. */
+  private static int skewed(SplittableRandom random, int videos) {
+    return (int) (videos * Math.pow(random.nextDouble(), 3));
+  }
+
+  private VideoLibrary library(int videos) throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < videos; i++) {
+      rows.append("Video ").append(i).append(" | v").append(i).append(" | #tag | u\n");
+    }
+    Files.writeString(catalog, rows);
+    return new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+  }
+}
@@ -1,28 +1,20 @@
 package com.google;
 
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.PrintStream;
+import java.util.Scanner;
 
 public class TestBase {
-    protected final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    //each test has its own output and answers, nothing goes through System.out or System.in
+    protected final MemorySink outputStream = new MemorySink();
     protected VideoPlayer videoPlayer;
-    private InputStream stdin;
+    //no answers until setInput, every question is declined
+    private Scanner input;
 
     @BeforeEach
     public void setUp() {
-      System.setOut(new PrintStream(outputStream));
-      videoPlayer = new VideoPlayer();
-      stdin = System.in;
-    }
-
-    @AfterEach
-    public void tearDown() {
-        System.setIn(stdin);
+      videoPlayer = new VideoPlayer(new PlayerEngine(new VideoLibrary()), PlayerEngine.DEFAULT_USER,
+          outputStream, PromptPolicy.reading(outputStream, () -> input == null ? "no" : input.next()), url -> { });
     }
 
     String[] getOutputLines() {
@@ -30,6 +22,6 @@ public class TestBase {
     }
 
     void setInput(String str) {
-      System.setIn(new ByteArrayInputStream((str + "\r\n").getBytes()));
+      input = new Scanner(str + "\r\n");
     }
 }
@@ -0,0 +1,67 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class UndoJournalTest {
+
+  private static VideoPlaylist playlist(int videos) {
+    VideoPlaylist playlist = new VideoPlaylist();
+    for (int i = 0; i < videos; i++) {
+      Video video = new FieldVideo("Video " + i, "v" + i, List.of(), "");
+      video.setOrdinal(i);
+      playlist.add(video);
+    }
+    return playlist;
+  }
+
+  @Test
+  public void testUndoesNewestFirstAndRedoesInOrder() {
+    UndoJournal journal = new UndoJournal();
+    journal.record(Verb.CREATE_PLAYLIST, "a", null, null);
+    journal.record(Verb.ADD_TO_PLAYLIST, "a", "v1", null);
+
+    assertEquals("v1", journal.second(journal.undo()));
+    assertEquals(Verb.CREATE_PLAYLIST, journal.verb(journal.undo()));
+    assertEquals(-1, journal.undo());
+    assertEquals(2, journal.redoable());
+
+    assertEquals(Verb.CREATE_PLAYLIST, journal.verb(journal.redo()));
+    //a new command forgets what could be redone
+    journal.record(Verb.PAUSE, null, null, null);
+    assertEquals(-1, journal.redo());
+    assertEquals(Verb.PAUSE, journal.verb(journal.undo()));
+  }
+
+  @Test
+  public void testDropsOldestWhenFull() {
+    UndoJournal journal = new UndoJournal(3, 100);
+    for (int i = 0; i < 5; i++) {
+      journal.record(Verb.PLAY, "v" + i, null, null);
+    }
+    assertEquals(3, journal.undoable());
+    assertEquals("v4", journal.first(journal.undo()));
+    assertEquals("v3", journal.first(journal.undo()));
+    assertEquals("v2", journal.first(journal.undo()));
+    assertEquals(-1, journal.undo());
+  }
+
+  @Test
+  public void testKeepsSavedVideosWithinBudget() {
+    UndoJournal journal = new UndoJournal(8, 10);
+    journal.record(Verb.CLEAR_PLAYLIST, "a", null, playlist(6));
+    journal.record(Verb.CLEAR_PLAYLIST, "b", null, playlist(6));
+    assertEquals(1, journal.undoable());
+
+    //the newest entry stays even when it alone is over the budget
+    journal.record(Verb.DELETE_PLAYLIST, "c", null, playlist(20));
+    assertEquals(1, journal.undoable());
+    int slot = journal.undo();
+    assertEquals("c", journal.first(slot));
+    journal.save(slot, null);
+    assertNull(journal.saved(slot));
+  }
+}
@@ -1,18 +1,35 @@
 package com.google;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class VideoLibraryTest {
 
   private VideoLibrary videoLibrary;
 
+  @TempDir
+  Path tempDir;
+
   @BeforeEach
   public void setUp() {
     videoLibrary = new VideoLibrary();
@@ -42,4 +59,345 @@ public class VideoLibraryTest {
     assertEquals("nothing_video_id", video.getVideoId());
     assertTrue(video.getTags().isEmpty());
   }
+
+  @Test
+  public void testMappedLoaderMatchesScannerLoader() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 |  #dog , #animal | https://example.com/1\r\n"
+            + "Video about nothing | 002 | | https://example.com/2\n"
+            + "\n"
+            + "No url | 003 | #a,\n"
+            + "Commas | 004 | ,#a,,#b, , | u\n"
+            + "Replaced | 001 | #x | https://example.com/dup\n"
+            + "Extra fields | 005 | #t | u | more\n"
+            + "Trailing pipes | 006 | #t ||\n"
+            + "Only id | 008\n"
+            + "No newline | 009 | #last | u");
+
+    VideoLibrary scanned = new VideoLibrary(catalog, VideoLibrary.Loader.SCANNER);
+    VideoLibrary mapped = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+
+    assertEquals(describe(scanned), describe(mapped));
+    assertEquals(8, mapped.getVideos().size());
+    assertEquals("Replaced", mapped.getVideo("001").getTitle());
+    assertEquals(9, mapped.getLoadStats().getRows());
+  }
+
+  @Test
+  public void testMappedLoaderDecodesUtf8() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.write(catalog, "\u00c9t\u00e9 \u2003| 007 | #caf\u00e9 | u".getBytes(StandardCharsets.UTF_8));
+
+    Video video = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED).getVideo("007");
+
+    assertEquals("\u00c9t\u00e9", video.getTitle());
+    assertEquals(List.of("#caf\u00e9"), video.getTags());
+  }
+
+  @Test
+  public void testParallelLoaderMatchesMappedLoader() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 60_000; i++) {
+      //ids repeat every 50k rows so later shards overwrite earlier ones
+      text.append("Video ").append(i).append(" | id").append(i % 50_000)
+          .append(" | #tag").append(i % 7).append(" , #all | https://example.com/").append(i)
+          .append(i % 3 == 0 ? "\r\n" : "\n");
+    }
+    Files.writeString(catalog, text);
+
+    VideoLibrary mapped = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    VideoLibrary parallel = new VideoLibrary(catalog, VideoLibrary.Loader.PARALLEL);
+
+    assertEquals(describe(mapped), describe(parallel));
+    assertEquals(50_000, parallel.getVideos().size());
+    assertEquals("Video 50000", parallel.getVideo("id0").getTitle());
+    assertEquals(60_000, parallel.getLoadStats().getRows());
+  }
+
+  @Test
+  public void testSnapshotIsBuiltThenServedLazily() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 |  #dog , #animal | https://example.com/1\n"
+            + "Amazing Cats | 002 | #cat , #animal | https://example.com/2\n"
+            + "Video about nothing | 003 | | https://example.com/3\n"
+            + "Funny Dogs again | 001 | #dog | https://example.com/4\n");
+
+    VideoLibrary built = new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT);
+    assertTrue(Files.exists(VideoLibrary.snapshotPath(catalog)));
+    assertEquals(4, built.getLoadStats().getRows());
+
+    VideoLibrary served = new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT);
+    //rows of a snapshot load are the stored videos, the duplicate row is already gone
+    assertEquals(3, served.getLoadStats().getRows());
+    assertEquals(3, served.size());
+    assertEquals("Funny Dogs again", served.getVideo("001").getTitle());
+    assertEquals(List.of("#cat", "#animal"), served.getVideo("002").getTags());
+    assertNull(served.getVideo("004"));
+    assertEquals(describe(built), describe(served));
+  }
+
+  @Test
+  public void testStaleOrDamagedSnapshotIsRebuilt() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog, "Funny Dogs | 001 | #dog | https://example.com/1\n");
+    new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT);
+
+    Files.writeString(catalog, "Amazing Cats | 002 | #cat | https://example.com/2\n");
+    VideoLibrary stale = new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT);
+    assertNull(stale.getVideo("001"));
+    assertEquals("Amazing Cats", stale.getVideo("002").getTitle());
+
+    Path snapshot = VideoLibrary.snapshotPath(catalog);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[bytes.length - 1] ^= 1;
+    Files.write(snapshot, bytes);
+    VideoLibrary damaged = new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT);
+    assertEquals("Amazing Cats", damaged.getVideo("002").getTitle());
+    assertEquals("Amazing Cats", new VideoLibrary(catalog, VideoLibrary.Loader.SNAPSHOT)
+        .getVideo("002").getTitle());
+  }
+
+  @Test
+  public void testTagLookupIgnoresCaseAndKeepsFlaggedVideos() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog , #Animal | u1\n"
+            + "Amazing Cats | 002 | #cat , #animal , #ANIMAL | u2\n"
+            + "Video about nothing | 003 | | u3\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    library.getVideo("001").setFlag(true);
+
+    List<String> ids = new ArrayList<>();
+    for (Video video : library.getVideosWithTag("#ANIMAL")) {
+      ids.add(video.getVideoId());
+    }
+    ids.sort(null);
+
+    assertEquals(List.of("001", "002"), ids);
+    assertEquals(1, library.getVideosWithTag("#cat").size());
+    assertTrue(library.getVideosWithTag("#bird").isEmpty());
+  }
+
+  @Test
+  public void testVideosShareOneCopyOfEachTag() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog , #animal | u1\n"
+            + "Amazing Cats | 002 | #cat , #animal | u2\n"
+            + "Video about nothing | 003\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    VideoLibrary scanned = new VideoLibrary(catalog, VideoLibrary.Loader.SCANNER);
+
+    assertEquals(List.of("#cat", "#animal"), library.getVideo("002").getTags());
+    assertTrue(library.getVideo("003").getTags().isEmpty());
+    assertSame(library.getVideo("001").getTags().get(1), library.getVideo("002").getTags().get(1));
+    assertSame(library.getVideo("001").getTags().get(1), scanned.getVideo("002").getTags().get(1));
+  }
+
+  @Test
+  public void testColumnsHoldTheSameCatalog() throws IOException {
+    assertColumnsHoldTheSameCatalog(VideoLibrary.Loader.COLUMNS);
+  }
+
+  @Test
+  public void testOffHeapColumnsHoldTheSameCatalog() throws IOException {
+    assertColumnsHoldTheSameCatalog(VideoLibrary.Loader.OFF_HEAP);
+  }
+
+  private void assertColumnsHoldTheSameCatalog(VideoLibrary.Loader loader) throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog , #animal | u1\n"
+            + "Amazing Cats | 002 | #cat , #animal | u2\n"
+            + "Caf\u00e9 Video | 003 | | u3\n"
+            + "Funnier Dogs | 001 | #dog | u4\n"
+            + "Life at Google | 004\n");
+    VideoLibrary mapped = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    VideoLibrary columns = new VideoLibrary(catalog, loader);
+
+    assertEquals(4, columns.size());
+    assertEquals(describe(mapped), describe(columns));
+    assertEquals(ids(mapped.getVideosByTitle()), ids(columns.getVideosByTitle()));
+    assertEquals(List.of("002"), ids(columns.getVideosWithTag("#ANIMAL")));
+    assertEquals(List.of("002", "003", "004"), ids(columns.searchTitles("a")));
+    assertEquals(ids(mapped.searchTitles("caf")), ids(columns.searchTitles("caf")));
+    assertNull(columns.getVideo("005"));
+
+    //videos are views built per use, their flag and ratings live in the columns
+    Video cats = columns.getVideo("002");
+    assertNotSame(cats, columns.getVideosWithTag("#cat").get(0));
+    assertEquals(cats.getOrdinal(), columns.getVideosWithTag("#cat").get(0).getOrdinal());
+    VideoPlaylist playlist = new VideoPlaylist();
+    playlist.add(cats);
+    assertTrue(playlist.contains(columns.getVideo("002")));
+    assertFalse(playlist.add(columns.getVideo("002")));
+    columns.setFlag(cats, true);
+    cats.setFlagReason("spam");
+    cats.addScore(4);
+    cats.addScores(new long[] {0, 2, 0, 0, 0}, 0);
+    assertTrue(columns.getVideo("002").isFlag());
+    assertEquals("spam", cats.getFlagReason());
+    assertEquals(3, cats.ratingCount());
+    assertEquals(1, cats.ratingCount(4));
+    assertEquals("Not supplied", columns.getVideo("001").getFlagReason());
+    columns.setFlag(cats, false);
+    assertEquals(List.of(false, false, false, false),
+        List.of(cats.isFlag(), columns.getVideo("001").isFlag(), columns.getVideo("003").isFlag(),
+            columns.getVideo("004").isFlag()));
+
+    columns.removeVideo("001");
+    columns.addVideo("Funny Dogs", "001", List.of("#dog"), "u5");
+    assertEquals("u5", columns.getVideo("001").getURL());
+    assertEquals(4, columns.size());
+  }
+
+  @Test
+  public void testTitleSearchReturnsMatchesInTitleOrder() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog | u1\n"
+            + "Amazing Cats | 002 | #cat | u2\n"
+            + "Another Cat Video | 003 | #cat | u3\n"
+            + "Life at Google | 004 | #google | u4\n"
+            + "Cat Videos Compilation | 005 | #cat | u5\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+
+    assertEquals(List.of("002", "003", "005"), ids(library.searchTitles("CAT")));
+    assertEquals(List.of("003", "005"), ids(library.searchTitles("cat vid")));
+    assertEquals(List.of("004"), ids(library.searchTitles("go")));
+    assertTrue(library.searchTitles("zebra").isEmpty());
+    assertEquals(5, library.searchTitles("").size());
+  }
+
+  @Test
+  public void testAddAndRemoveKeepViewsInTitleOrder() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog , #animal | u1\n"
+            + "Amazing Cats | 002 | #cat , #animal | u2\n"
+            + "Life at Google | 003 | #google | u3\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    //build every view before changing the library
+    library.getVideosByTitle();
+    library.searchTitles("a");
+    library.getVideosWithTag("#animal");
+
+    library.addVideo("Cute Animals", "004", List.of("#Animal"), "u4");
+    library.removeVideo("002");
+    library.addVideo("Amazing Dogs", "001", List.of("#dog"), "u5");
+
+    assertEquals(3, library.size());
+    assertEquals(List.of("001", "004", "003"), ids(library.getVideosByTitle()));
+    assertEquals(List.of("004", "003"), ids(library.getVideosByTitle(1, 5)));
+    assertEquals(List.of("001", "004", "003"), ids(library.searchTitles("a")));
+    assertEquals(List.of("001"), ids(library.searchTitles("dog")));
+    assertEquals(List.of("004"), ids(library.getVideosWithTag("#animal")));
+    assertNull(library.getVideo("002"));
+    assertEquals("Amazing Dogs", library.getVideo("001").getTitle());
+    library.addVideo("Bats", "005", List.of("#animal"), "u6");
+    assertEquals(List.of("005", "004"), ids(library.getVideosWithTag("#animal")));
+  }
+
+  @Test
+  public void testCursorPagesThroughTitleOrder() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    StringBuilder rows = new StringBuilder();
+    for (int i = 9; i >= 0; i--) {
+      rows.append("Video ").append(i).append(" | ").append(i).append(" | | u\n");
+    }
+    Files.writeString(catalog, rows);
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+
+    VideoCursor cursor = library.cursorByTitle(4, 3);
+    assertEquals(4, cursor.position());
+    assertEquals(List.of("4", "5", "6"), ids(listOf(cursor)));
+    assertEquals(List.of("8", "9"), ids(library.getVideosByTitle(8, 3)));
+    assertEquals(List.of(), ids(library.getVideosByTitle(12, 3)));
+  }
+
+  @Test
+  public void testRandomPicksSkipFlaggedAndRemovedVideos() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog,
+        "Funny Dogs | 001 | #dog | u1\n"
+            + "Amazing Cats | 002 | #cat | u2\n"
+            + "Life at Google | 003 | #google | u3\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    SplittableRandom random = new SplittableRandom(1);
+    library.setFlag(library.getVideo("001"), true);
+    library.removeVideo("002");
+    for (int i = 0; i < 20; i++) {
+      assertEquals("003", library.randomVideo(random).getVideoId());
+    }
+
+    library.setFlag(library.getVideo("003"), true);
+    assertNull(library.randomVideo(random));
+    assertNull(library.randomRatedVideo(random));
+    library.setFlag(library.getVideo("001"), false);
+    library.addVideo("Cute Animals", "004", List.of("#animal"), "u4");
+    Set<String> picked = new TreeSet<>();
+    for (int i = 0; i < 50; i++) {
+      picked.add(library.randomVideo(random).getVideoId());
+    }
+    assertEquals(Set.of("001", "004"), picked);
+  }
+
+  @Test
+  public void testRatedPicksFollowAverageRating() throws IOException {
+    Path catalog = tempDir.resolve("videos.txt");
+    Files.writeString(catalog, "Funny Dogs | 001 | | u1\nAmazing Cats | 002 | | u2\n");
+    VideoLibrary library = new VideoLibrary(catalog, VideoLibrary.Loader.MAPPED);
+    SplittableRandom random = new SplittableRandom(7);
+    library.getVideo("001").addScore(4);
+    library.ratingsChanged();
+
+    //001 weighs 4, the unrated 002 weighs 1
+    int first = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (library.randomRatedVideo(random).getVideoId().equals("001")) {
+        first++;
+      }
+    }
+    assertTrue(first > 7700 && first < 8300, "picked 001 " + first + " times");
+
+    //ratings given after the table was built are seen once the picks are rebuilt
+    library.getVideo("002").addScore(5);
+    library.getVideo("002").addScore(5);
+    library.getVideo("002").addScore(2);
+    library.ratingsChanged();
+    library.refreshRandomPicks();
+    first = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (library.randomRatedVideo(random).getVideoId().equals("001")) {
+        first++;
+      }
+    }
+    assertTrue(first > 4700 && first < 5300, "picked 001 " + first + " times");
+  }
+
+  private static List<Video> listOf(VideoCursor cursor) {
+    List<Video> videos = new ArrayList<>();
+    cursor.forEachRemaining(videos::add);
+    return videos;
+  }
+
+  private static List<String> ids(List<Video> videos) {
+    List<String> ids = new ArrayList<>();
+    for (Video video : videos) {
+      ids.add(video.getVideoId());
+    }
+    return ids;
+  }
+
+  private static Map<String, String> describe(VideoLibrary library) {
+    Map<String, String> rows = new TreeMap<>();
+    for (Video video : library.getVideos()) {
+      rows.put(video.getVideoId(),
+          video.getTitle() + "|" + video.getTags() + "|" + video.getURL());
+    }
+    return rows;
+  }
 }
@@ -0,0 +1,84 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class VideoPlaylistTest {
+
+  @Test
+  public void testKeepsInsertionOrderAcrossRemovals() {
+    Video[] videos = videos(4);
+    VideoPlaylist playlist = new VideoPlaylist();
+    for (Video video : videos) {
+      assertTrue(playlist.add(video));
+    }
+    assertFalse(playlist.add(videos[2]));
+
+    assertTrue(playlist.remove(videos[1]));
+    assertFalse(playlist.remove(videos[1]));
+    assertFalse(playlist.contains(videos[1]));
+    assertTrue(playlist.add(videos[1]));
+
+    assertEquals(List.of(videos[0], videos[2], videos[3], videos[1]), list(playlist));
+    assertSame(videos[2], playlist.get(1));
+    assertSame(videos[1], playlist.get(3));
+    assertThrows(IndexOutOfBoundsException.class, () -> playlist.get(4));
+
+    List<Video> copy = playlist.videos();
+    assertTrue(playlist.remove(videos[0]));
+    assertEquals(List.of(videos[0], videos[2], videos[3], videos[1]), copy);
+  }
+
+  @Test
+  public void testMatchesListUnderRandomChanges() {
+    Video[] videos = videos(500);
+    VideoPlaylist playlist = new VideoPlaylist();
+    List<Video> expected = new ArrayList<>();
+    Random random = new Random(7);
+    for (int step = 0; step < 20_000; step++) {
+      Video video = videos[random.nextInt(videos.length)];
+      //bias towards adding early on and removing later, so the playlist grows and shrinks
+      boolean add = random.nextInt(20_000) > step / 2;
+      if (add) {
+        assertEquals(!expected.contains(video), playlist.add(video));
+        if (!expected.contains(video)) {
+          expected.add(video);
+        }
+      } else {
+        assertEquals(expected.remove(video), playlist.remove(video));
+      }
+      assertEquals(expected.size(), playlist.size());
+      if (!expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        assertSame(expected.get(index), playlist.get(index));
+      }
+    }
+    assertEquals(expected, list(playlist));
+    for (Video video : videos) {
+      assertEquals(expected.contains(video), playlist.contains(video));
+    }
+  }
+
+  private static Video[] videos(int count) {
+    Video[] videos = new Video[count];
+    for (int i = 0; i < count; i++) {
+      videos[i] = new FieldVideo("Video " + i, "v" + i, List.of(), "");
+      videos[i].setOrdinal(i);
+    }
+    return videos;
+  }
+
+  private static List<Video> list(VideoPlaylist playlist) {
+    List<Video> videos = new ArrayList<>();
+    playlist.forEach(videos::add);
+    return videos;
+  }
+}
@@ -0,0 +1,90 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class VideoTest {
+
+  private static Video video() {
+    return new FieldVideo("Funny Dogs", "001", List.of("#dog"), "u1");
+  }
+
+  @Test
+  public void testAverageOfMixedScores() {
+    Video video = video();
+    video.addScore(5);
+    video.addScore(4);
+    video.addScore(4);
+    video.addScore(1);
+
+    assertEquals(3.5f, video.averageScore());
+    assertEquals(4, video.ratingCount());
+    assertEquals(2, video.ratingCount(4));
+    assertEquals(0, video.ratingCount(2));
+  }
+
+  @Test
+  public void testNeverRatedAveragesZero() {
+    Video video = video();
+
+    assertEquals(0f, video.averageScore());
+    assertEquals(0, video.ratingCount());
+  }
+
+  @Test
+  public void testScoresOutOfRangeAreRejected() {
+    Video video = video();
+
+    assertThrows(IllegalArgumentException.class, () -> video.addScore(0));
+    assertThrows(IllegalArgumentException.class, () -> video.addScore(Video.MAX_SCORE + 1));
+    assertEquals(0, video.ratingCount());
+  }
+
+  @Test
+  public void testBulkScoresAddToSingleOnes() {
+    Video video = video();
+    video.addScore(2);
+    video.addScores(new long[] {9, 1, 0, 0, 0, 3, 0}, 2);
+
+    assertEquals(4, video.ratingCount());
+    assertEquals(3, video.ratingCount(4));
+    assertEquals(3.5f, video.averageScore());
+  }
+
+  @Test
+  public void testConcurrentScoresAreAllCounted() throws InterruptedException {
+    Video video = video();
+    int threads = 8;
+    int scoresPerThread = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> raters = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int score = t % Video.MAX_SCORE + 1;
+      Thread rater = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < scoresPerThread; i++) {
+          video.addScore(score);
+        }
+      });
+      rater.start();
+      raters.add(rater);
+    }
+    start.countDown();
+    for (Thread rater : raters) {
+      rater.join();
+    }
+
+    assertEquals((long) threads * scoresPerThread, video.ratingCount());
+    //threads 0 and 5 both give one star
+    assertEquals(2L * scoresPerThread, video.ratingCount(1));
+  }
+}